@@ -14,7 +14,7 @@ public class Main
         new Application(new Configuration()).start(new TestGame());
     }
 
-    public static class TestGame extends Game
+    public static class TestGame extends Game<Void>
     {
         ShapeBatch shape;
         SpriteBatch batch;
@@ -4,6 +4,8 @@ import com.github.charlieboggus.sgl.utility.Logger;
 
 import org.lwjgl.glfw.GLFWErrorCallback;
 
+import java.util.concurrent.Semaphore;
+
 import static org.lwjgl.glfw.GLFW.*;
 
 public class Application
@@ -14,6 +16,15 @@ public class Application
     private Configuration cfg;
     private Timer timer;
 
+    // Fixed time step state
+    private float accumulator;
+    private float interval;
+
+    // Pipelined mode state (shared with the simulation thread)
+    private volatile boolean simulating;
+    private float simulationDelta;
+    private RuntimeException simulationError;
+
     public Application(Configuration cfg)
     {
         // Set the GLFW error callback
@@ -34,14 +45,17 @@ public class Application
         this.cfg = cfg;
     }
 
-    public void start(Game game)
+    public void start(Game<?> game)
     {
         initialize(game);
-        loop(game);
+        if(this.cfg.isPipelined())
+            loopPipelined(game);
+        else
+            loop(game);
         shutdown(game);
     }
 
-    private void initialize(Game game)
+    private void initialize(Game<?> game)
     {
         // Initialize application timer
         this.timer = new Timer();
@@ -66,44 +80,130 @@ public class Application
         game.initialize();
     }
 
-    private void loop(Game game)
+    private void loop(Game<?> game)
     {
-        float accumulator = 0.0f;
-        float interval = 1.0f / this.cfg.getTargetUPS();
+        this.accumulator = 0.0f;
+        this.interval = 1.0f / this.cfg.getTargetUPS();
         while(!Display.shouldClose())
         {
             float delta = this.timer.getDeltaTime();
-            accumulator += delta;
 
             // Events
             Input.poll();
             game.processInput();
 
             // Update game logic
-            while(accumulator >= interval)
+            this.update(game, delta);
+            game.swapRenderState();
+
+            // Render
+            Display.clear();
+            game.render();
+            this.timer.updateFPS();
+
+            // Refresh
+            this.refresh();
+        }
+    }
+
+    /**
+     * Pipelined game loop: while the render thread (this thread) renders the state published by the updates of frame
+     * N, the simulation thread runs the updates of frame N + 1. Input is polled & processed on the render thread before
+     * the two run, so update can safely read it. Frame time is the larger of update and render time rather than their
+     * sum. Update must not make any OpenGL calls in this mode.
+     */
+    private void loopPipelined(Game<?> game)
+    {
+        this.accumulator = 0.0f;
+        this.interval = 1.0f / this.cfg.getTargetUPS();
+
+        Semaphore start = new Semaphore(0);
+        Semaphore done = new Semaphore(0);
+        this.simulating = true;
+        Thread simulation = new Thread(() -> {
+            while(true)
             {
-                game.update(delta);
-                this.timer.updateUPS();
-                accumulator -= interval;
+                start.acquireUninterruptibly();
+                if(!this.simulating)
+                    break;
+                try
+                {
+                    this.update(game, this.simulationDelta);
+                }
+                catch(RuntimeException e)
+                {
+                    // Rethrown on the render thread, as if update had been called there
+                    this.simulationError = e;
+                }
+                finally
+                {
+                    done.release();
+                }
             }
+        }, "SGL Simulation");
+        simulation.setDaemon(true);
+        simulation.start();
 
-            // Render
+        while(!Display.shouldClose())
+        {
+            float delta = this.timer.getDeltaTime();
+
+            // Events
+            Input.poll();
+            game.processInput();
+
+            // Update the next frame on the simulation thread
+            this.simulationDelta = delta;
+            start.release();
+
+            // Render the current frame
             Display.clear();
             game.render();
             this.timer.updateFPS();
 
+            // Wait for the simulation to finish, then draw what it published next frame
+            done.acquireUninterruptibly();
+            if(this.simulationError != null)
+            {
+                this.simulating = false;
+                start.release();
+                throw this.simulationError;
+            }
+            game.swapRenderState();
+
             // Refresh
-            Input.refresh();
-            Display.refresh();
-            this.timer.update();
+            this.refresh();
+        }
+
+        // Stop the simulation thread
+        this.simulating = false;
+        start.release();
+        try { simulation.join(); } catch (InterruptedException e) { /* Ignore */ }
+    }
 
-            // Synchronize FPS if necessary
-            if(!Display.isVsyncEnabled() || !Display.isFocused())
-                this.synchronize(Display.isFocused() ? this.cfg.getTargetFPS() : this.cfg.getIdleFPS());
+    private void update(Game<?> game, float delta)
+    {
+        this.accumulator += delta;
+        while(this.accumulator >= this.interval)
+        {
+            game.update(delta);
+            this.timer.updateUPS();
+            this.accumulator -= this.interval;
         }
     }
 
-    private void shutdown(Game game)
+    private void refresh()
+    {
+        Input.refresh();
+        Display.refresh();
+        this.timer.update();
+
+        // Synchronize FPS if necessary
+        if(!Display.isVsyncEnabled() || !Display.isFocused())
+            this.synchronize(Display.isFocused() ? this.cfg.getTargetFPS() : this.cfg.getIdleFPS());
+    }
+
+    private void shutdown(Game<?> game)
     {
         // Shutdown the game
         game.shutdown();
@@ -26,6 +26,7 @@ public class Configuration
     private int targetFPS = 144;
     private int targetUPS = 30;
     private int idleFPS = 30;
+    private boolean pipelined = false;
 
     private int width = 1920;
     private int height = 1080;
@@ -39,6 +40,13 @@ public class Configuration
     private TextureFilterMode textureFilterMode = TextureFilterMode.Anisotropic16x;
     private AntialiasMode antialiasMode = AntialiasMode.MSAA8x;
 
+    private int batchSize = 8192;
+    private int batchBufferCount = 1;
+    private String shaderCacheDirectory = "shadercache";
+    private int textureUploadBudget = 4 * 1024 * 1024;
+    private long textureBudget = 0;
+    private int textureReloadLevel = 0;
+
     public boolean isDebugging()
     {
         return this.debugging;
@@ -99,6 +107,16 @@ public class Configuration
         this.idleFPS = t;
     }
 
+    public boolean isPipelined()
+    {
+        return this.pipelined;
+    }
+
+    public void setPipelined(boolean b)
+    {
+        this.pipelined = b;
+    }
+
     public int getWidth()
     {
         return this.width;
@@ -210,4 +228,64 @@ public class Configuration
     {
         this.antialiasMode = mode;
     }
+
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    public void setBatchSize(int quads)
+    {
+        this.batchSize = quads;
+    }
+
+    public int getBatchBufferCount()
+    {
+        return this.batchBufferCount;
+    }
+
+    public void setBatchBufferCount(int count)
+    {
+        this.batchBufferCount = count;
+    }
+
+    public String getShaderCacheDirectory()
+    {
+        return this.shaderCacheDirectory;
+    }
+
+    public void setShaderCacheDirectory(String dir)
+    {
+        this.shaderCacheDirectory = dir;
+    }
+
+    public int getTextureUploadBudget()
+    {
+        return this.textureUploadBudget;
+    }
+
+    public void setTextureUploadBudget(int bytes)
+    {
+        this.textureUploadBudget = bytes;
+    }
+
+    public long getTextureBudget()
+    {
+        return this.textureBudget;
+    }
+
+    public void setTextureBudget(long bytes)
+    {
+        this.textureBudget = bytes;
+    }
+
+    public int getTextureReloadLevel()
+    {
+        return this.textureReloadLevel;
+    }
+
+    public void setTextureReloadLevel(int level)
+    {
+        this.textureReloadLevel = level;
+    }
 }
@@ -1,16 +1,20 @@
 package com.github.charlieboggus.sgl.core;
 
+import com.github.charlieboggus.sgl.graphics.g2d.TextureLoader;
+import com.github.charlieboggus.sgl.graphics.g2d.TextureResidency;
+import com.github.charlieboggus.sgl.graphics.gl.GLPixelReader;
+import com.github.charlieboggus.sgl.graphics.gl.GLShaderProgram;
+import com.github.charlieboggus.sgl.graphics.gl.GLState;
 import com.github.charlieboggus.sgl.utility.*;
 
-import org.lwjgl.BufferUtils;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.stb.STBImage;
+import org.lwjgl.stb.STBImageWrite;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
@@ -50,6 +54,8 @@ public class Display
     private static TextureFilterMode filter;
 
     private static int screenshotID = 0;
+    private static GLPixelReader screenshotReader;
+    private static FrameRecorder recorder;
 
     /**
      * Method to create the application display
@@ -107,6 +113,9 @@ public class Display
         glfwSwapInterval(cfg.isVsyncEnabled() ? 1 : 0);
         GL.createCapabilities();
 
+        // Create the pixel buffers screenshots are read back through
+        screenshotReader = new GLPixelReader(3, "SGL Screenshot");
+
         // Create and set the GLFW callbacks
         sizeCB = GLFWWindowSizeCallback.create((win, w, h) -> viewportChanged = true);
         glfwSetWindowSizeCallback(context, sizeCB);
@@ -191,6 +200,8 @@ public class Display
      */
     static void destroy()
     {
+        stopRecording();
+        screenshotReader.destroy();
         sizeCB.free();
         fbSizeCB.free();
         posCB.free();
@@ -232,6 +243,22 @@ public class Display
         glClear(GL_COLOR_BUFFER_BIT);
     }
 
+    /**
+     * Method to save bottom row first RGBA pixels as a top row first PNG. The rows are flipped by starting at the last
+     * row with a negative stride, rather than with stbi_flip_vertically_on_write, which is global to the process.
+     *
+     * @return true if the PNG was written, false otherwise
+     */
+    private static boolean writeFlippedPNG(String file, ByteBuffer pixels, int width, int height)
+    {
+        try(MemoryStack stack = MemoryStack.stackPush())
+        {
+            ByteBuffer name = stack.UTF8(file);
+            long lastRow = MemoryUtil.memAddress(pixels) + (long) (height - 1) * width * 4;
+            return STBImageWrite.nstbi_write_png(MemoryUtil.memAddress(name), width, height, 4, lastRow, -width * 4) != 0;
+        }
+    }
+
     /**
      * Method to refresh the display after each rendering cycle
      */
@@ -239,43 +266,42 @@ public class Display
     {
         if(screenshotTaken)
         {
-            // Read Pixel data from OpenGL front buffer
-            ByteBuffer buffer = BufferUtils.createByteBuffer(viewportWidth * viewportHeight * 4);
-            glReadBuffer(GL_FRONT);
-            glReadPixels(0, 0, viewportWidth, viewportHeight, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
-
-            // Create new buffered image from pixel data read from front buffer
-            BufferedImage image = new BufferedImage(viewportWidth, viewportHeight, BufferedImage.TYPE_INT_ARGB);
-            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
-            for(int i = 0; i < viewportHeight; i++)
+            // Start reading the back buffer, the pixels are encoded & saved on the screenshot thread once the GPU is done
+            String file = "screenshot" + screenshotID + ".png";
+            glReadBuffer(GL_BACK);
+            screenshotReader.read(0, 0, viewportWidth, viewportHeight, (pixels, w, h) ->
             {
-                for(int j = 0; j < viewportWidth; j++)
-                {
-                    int r = buffer.get() & 0xFF;
-                    int g = buffer.get() & 0xFF;
-                    int b = buffer.get() & 0xFF;
-                    int a = buffer.get() & 0xFF;
-
-                    pixels[(viewportHeight - i - 1) * viewportWidth + j] = (a << 24) | (r << 16) | (g << 8) | b;
-                }
-            }
-
-            // Save the buffered image to disk
-            try {
-                FileIO.writeBufferedImage("screenshot" + screenshotID + ".png", image);
-            }
-            catch (IOException e) {
-                logger.error("Failed to save screenshot: screenshot" + screenshotID + ".png");
-            }
-
-            if(config.isDebugging())
-                logger.debug("Screenshot saved: screenshot" + screenshotID + ".png");
+                if(!writeFlippedPNG(file, pixels, w, h))
+                    logger.error("Failed to save screenshot: " + file);
+                else if(config.isDebugging())
+                    logger.debug("Screenshot saved: " + file);
+            });
 
             screenshotID++;
             screenshotTaken = false;
         }
 
+        // Start reading back the frame if it's being recorded
+        if(recorder != null)
+        {
+            glReadBuffer(GL_BACK);
+            recorder.capture(viewportWidth, viewportHeight);
+        }
+
         glfwSwapBuffers(context);
+        screenshotReader.update();
+        if(recorder != null)
+            recorder.update();
+
+        // Upload the next part of any asynchronously loaded textures
+        TextureLoader.update();
+
+        // Evict the least recently used textures if the texture budget is exceeded
+        TextureResidency.update();
+
+        // End the per frame GL counters
+        GLShaderProgram.endFrame();
+        GLState.endFrame();
     }
 
     /**
@@ -308,6 +334,47 @@ public class Display
         screenshotTaken = true;
     }
 
+    /**
+     * Method to start recording every frame rendered to the display into a capture file. Frames are stored as raw
+     * RGBA8 pixels with an index at the end of the file (see FrameRecorder for the layout).
+     *
+     * @param file the capture file to record to (replaced if it already exists)
+     */
+    public static void startRecording(String file)
+    {
+        if(recorder != null)
+        {
+            logger.warning("Display is already recording!");
+            return;
+        }
+
+        try
+        {
+            recorder = new FrameRecorder(file);
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to create recording: " + file);
+        }
+    }
+
+    /**
+     * Method to stop recording. Waits for the frames still being read back to be written.
+     */
+    public static void stopRecording()
+    {
+        if(recorder != null)
+        {
+            recorder.stop();
+            recorder = null;
+        }
+    }
+
+    public static boolean isRecording()
+    {
+        return recorder != null;
+    }
+
     /**
      * Method to set the size of the display
      *
@@ -522,4 +589,64 @@ public class Display
     {
         return filter;
     }
+
+    /**
+     * Method to get the default SpriteBatch capacity
+     *
+     * @return the maximum number of quads drawn per SpriteBatch flush
+     */
+    public static int getBatchSize()
+    {
+        return config.getBatchSize();
+    }
+
+    /**
+     * Method to get the default number of vertex buffers a SpriteBatch cycles through
+     *
+     * @return the number of vertex buffers per SpriteBatch
+     */
+    public static int getBatchBufferCount()
+    {
+        return config.getBatchBufferCount();
+    }
+
+    /**
+     * Method to get the directory linked shader program binaries are cached in
+     *
+     * @return the shader cache directory, or null if program binaries aren't cached
+     */
+    public static String getShaderCacheDirectory()
+    {
+        return config.getShaderCacheDirectory();
+    }
+
+    /**
+     * Method to get the maximum number of bytes of asynchronously loaded textures uploaded per frame
+     *
+     * @return the per frame texture upload budget in bytes
+     */
+    public static int getTextureUploadBudget()
+    {
+        return config.getTextureUploadBudget();
+    }
+
+    /**
+     * Method to get the estimated video memory textures may use before the least recently used ones are evicted
+     *
+     * @return the texture budget in bytes, or 0 if textures are never evicted
+     */
+    public static long getTextureBudget()
+    {
+        return config.getTextureBudget();
+    }
+
+    /**
+     * Method to get the number of mip levels skipped when an evicted texture is reloaded
+     *
+     * @return the number of mip levels skipped on reload
+     */
+    public static int getTextureReloadLevel()
+    {
+        return config.getTextureReloadLevel();
+    }
 }
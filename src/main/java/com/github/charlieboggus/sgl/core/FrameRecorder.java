@@ -0,0 +1,227 @@
+package com.github.charlieboggus.sgl.core;
+
+import com.github.charlieboggus.sgl.graphics.gl.GLPixelReader;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every frame drawn to the display into a capture file. Frames are read back through a GLPixelReader and
+ * written to the file with positional writes on the reader's background thread, so the render thread never waits on
+ * the GPU or the disk (the writes only copy into the OS page cache, the file is forced to disk once when the recording
+ * is stopped). Frames are dropped (and counted) instead if the readback ring is full. The file always ends exactly
+ * after the last thing written, so it never has to be truncated.
+ *
+ * Capture file layout (little endian):
+ *   header (32 bytes): magic "SGLR", version, frame count, unused, index offset (long), duration in nanoseconds (long)
+ *   frames: a 16 byte frame header (width, height, timestamp in nanoseconds since the start as a long) followed by
+ *           raw RGBA8 pixels, bottom row first
+ *   index (24 bytes per frame): offset of the frame header (long), width, height, timestamp in nanoseconds since the
+ *                               start (long)
+ *
+ * The frame count & duration in the header are updated every HEADER_UPDATE_FRAMES frames while recording, with an
+ * index offset of 0. If the recording wasn't stopped (i.e. the game crashed), the frames can still be found by walking
+ * the frame headers, up to the frame count in the header.
+ */
+final class FrameRecorder
+{
+    private static final Logger logger = Logger.getLogger(FrameRecorder.class);
+
+    private static final int MAGIC = 0x52474C53;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int FRAME_HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 24;
+
+    // Number of frames between updates of the file header while recording
+    private static final int HEADER_UPDATE_FRAMES = 60;
+
+    // Number of frames that can be read back at once
+    private static final int READBACK_BUFFERS = 4;
+
+    private final String file;
+    private final FileChannel channel;
+    private final GLPixelReader reader;
+    private final long startTime;
+
+    // Only touched by the reader's background thread until the recording is stopped
+    private long position;
+    private final ByteBuffer header;
+    private final ByteBuffer frameHeader;
+    private ByteBuffer index;
+    private int written;
+    private boolean failed;
+
+    private int dropped;
+
+    /**
+     * Creates a new FrameRecorder, replacing the given file if it already exists
+     *
+     * @param file the capture file to record to
+     * @throws IOException if the capture file can't be created
+     */
+    FrameRecorder(String file) throws IOException
+    {
+        this.file = file;
+        this.channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.reader = new GLPixelReader(READBACK_BUFFERS, "SGL Recording");
+        this.startTime = System.nanoTime();
+
+        this.position = HEADER_SIZE;
+        this.header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.index = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        this.written = 0;
+        this.failed = false;
+        this.dropped = 0;
+
+        this.writeHeader(0);
+    }
+
+    /**
+     * Method to start reading back the current frame from the read framebuffer. Called by the Display before the
+     * buffers are swapped.
+     */
+    void capture(int width, int height)
+    {
+        if(!this.reader.hasFreeBuffer())
+        {
+            this.dropped++;
+            return;
+        }
+
+        long time = System.nanoTime() - this.startTime;
+        this.reader.read(0, 0, width, height, (pixels, w, h) -> this.write(pixels, w, h, time));
+    }
+
+    /**
+     * Method to hand finished readbacks to the recording thread. Called by the Display once per frame.
+     */
+    void update()
+    {
+        this.reader.update();
+    }
+
+    /**
+     * Method to finish writing all frames in flight, write the index & close the capture file
+     */
+    void stop()
+    {
+        this.reader.destroy();
+
+        try
+        {
+            // Append the index after the last frame, fill in the header & flush everything to disk once
+            long indexOffset = this.position;
+            this.index.flip();
+            this.writeFully(this.index, indexOffset);
+            this.writeHeader(indexOffset);
+            this.channel.force(false);
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to finish recording: " + this.file);
+        }
+        finally
+        {
+            try
+            {
+                this.channel.close();
+            }
+            catch(IOException e)
+            {
+                logger.warning("Failed to close recording: " + this.file);
+            }
+        }
+
+        logger.info("Recorded " + this.written + " frames to " + this.file + " (" + this.dropped + " dropped)");
+    }
+
+    int getWrittenFrames()
+    {
+        return this.written;
+    }
+
+    int getDroppedFrames()
+    {
+        return this.dropped;
+    }
+
+    /**
+     * Method to append a frame to the capture file. Called on the recording thread.
+     */
+    private void write(ByteBuffer pixels, int width, int height, long time)
+    {
+        if(this.failed)
+            return;
+
+        int size = width * height * 4;
+        long offset = this.position;
+        try
+        {
+            this.frameHeader.clear();
+            this.frameHeader.putInt(width).putInt(height).putLong(time).flip();
+            this.writeFully(this.frameHeader, offset);
+
+            pixels.limit(size);
+            this.writeFully(pixels, offset + FRAME_HEADER_SIZE);
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to write recording: " + this.file + ", no more frames will be recorded");
+            this.failed = true;
+            return;
+        }
+
+        if(!this.index.hasRemaining())
+        {
+            ByteBuffer index = ByteBuffer.allocate(this.index.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            this.index.flip();
+            index.put(this.index);
+            this.index = index;
+        }
+        this.index.putLong(offset).putInt(width).putInt(height).putLong(time);
+
+        this.position = offset + FRAME_HEADER_SIZE + size;
+        this.written++;
+
+        // Keep the header up to date, so a capture that is never stopped can still be read
+        if(this.written % HEADER_UPDATE_FRAMES == 0)
+        {
+            try
+            {
+                this.writeHeader(0);
+            }
+            catch(IOException e)
+            {
+                logger.warning("Failed to update recording header: " + this.file);
+            }
+        }
+    }
+
+    /**
+     * Method to write the file header
+     *
+     * @param indexOffset the offset of the index, or 0 if the index hasn't been written yet
+     */
+    private void writeHeader(long indexOffset) throws IOException
+    {
+        this.header.clear();
+        this.header.putInt(MAGIC).putInt(VERSION).putInt(this.written).putInt(0);
+        this.header.putLong(indexOffset).putLong(System.nanoTime() - this.startTime);
+        this.header.flip();
+        this.writeFully(this.header, 0);
+    }
+
+    private void writeFully(ByteBuffer buffer, long offset) throws IOException
+    {
+        while(buffer.hasRemaining())
+            offset += this.channel.write(buffer, offset);
+    }
+}
@@ -1,9 +1,17 @@
 package com.github.charlieboggus.sgl.core;
 
-public abstract class Game
+/**
+ * Base class of a game. S is the type of the render state update publishes for render to draw (use Void if the game
+ * doesn't publish one).
+ */
+public abstract class Game<S>
 {
     Application app;
 
+    // Render state published by update, and the render state currently used by render
+    private volatile S publishedState;
+    private S renderState;
+
     public int getFPS()
     {
         return this.app.getFPS();
@@ -14,6 +22,34 @@ public abstract class Game
         return this.app.getUPS();
     }
 
+    /**
+     * Method to publish the state the next call to render should draw. In pipelined mode update runs on the simulation
+     * thread while render draws the previously published state on the render thread, so the published object must not
+     * be modified after it has been published (i.e. alternate between two snapshots, or publish a new one every time).
+     * In the default mode render always sees the state published by the latest update.
+     *
+     * @param state the render state
+     */
+    protected void publishRenderState(S state)
+    {
+        this.publishedState = state;
+    }
+
+    /**
+     * Method to get the render state to draw. Stays the same for the duration of a call to render.
+     *
+     * @return the render state published by update, or null if no state has been published yet
+     */
+    protected S getRenderState()
+    {
+        return this.renderState;
+    }
+
+    void swapRenderState()
+    {
+        this.renderState = this.publishedState;
+    }
+
     public abstract void initialize();
     public abstract void shutdown();
     public abstract void processInput();
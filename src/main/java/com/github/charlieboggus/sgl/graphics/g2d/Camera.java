@@ -1,6 +1,9 @@
 package com.github.charlieboggus.sgl.graphics.g2d;
 
+import com.github.charlieboggus.sgl.core.Display;
+
 import org.joml.Matrix4f;
+import org.joml.Rectanglef;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 
@@ -24,6 +27,8 @@ public class Camera
     }
 
     private final Transformation transform;
+    private final Matrix4f inverseView;
+    private final Rectanglef visibleBounds;
     private final Vector2f position;
     private final Vector2f origin;
     private float zoom;
@@ -32,6 +37,8 @@ public class Camera
     public Camera()
     {
         this.transform = new Transformation();
+        this.inverseView = new Matrix4f();
+        this.visibleBounds = new Rectanglef();
         this.position = new Vector2f(0.0f, 0.0f);
         this.origin = new Vector2f(0.0f, 0.0f);
         this.zoom = 1.0f;
@@ -152,6 +159,51 @@ public class Camera
         this.rotation = 0.0f;
     }
 
+    /**
+     * Method to get the axis aligned bounds of the area of the world visible through the camera in the current
+     * viewport, taking the position, origin, zoom and rotation of the camera into account. The returned rectangle is
+     * reused by the camera and updated every time this method is called.
+     *
+     * @return the visible area of the world
+     */
+    public Rectanglef getVisibleBounds()
+    {
+        return this.getVisibleBounds(Display.getViewportWidth(), Display.getViewportHeight(), this.visibleBounds);
+    }
+
+    /**
+     * Method to get the axis aligned bounds of the area of the world visible through the camera in a viewport of the
+     * given size
+     *
+     * @param viewportWidth width of the viewport
+     * @param viewportHeight height of the viewport
+     * @param dest rectangle to store the visible area of the world in
+     * @return dest
+     */
+    public Rectanglef getVisibleBounds(float viewportWidth, float viewportHeight, Rectanglef dest)
+    {
+        // Transform the corners of the viewport back into world space
+        Matrix4f m = this.getViewMatrix().invertAffine(this.inverseView);
+
+        dest.minX = Float.POSITIVE_INFINITY;
+        dest.minY = Float.POSITIVE_INFINITY;
+        dest.maxX = Float.NEGATIVE_INFINITY;
+        dest.maxY = Float.NEGATIVE_INFINITY;
+        for(int i = 0; i < 4; i++)
+        {
+            float sx = (i & 1) == 0 ? 0.0f : viewportWidth;
+            float sy = (i & 2) == 0 ? 0.0f : viewportHeight;
+            float wx = m.m00() * sx + m.m10() * sy + m.m30();
+            float wy = m.m01() * sx + m.m11() * sy + m.m31();
+            dest.minX = Math.min(dest.minX, wx);
+            dest.minY = Math.min(dest.minY, wy);
+            dest.maxX = Math.max(dest.maxX, wx);
+            dest.maxY = Math.max(dest.maxY, wy);
+        }
+
+        return dest;
+    }
+
     Matrix4f getViewMatrix()
     {
         boolean dirty = false;
@@ -0,0 +1,213 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.graphics.gl.GLTexture;
+import com.github.charlieboggus.sgl.utility.Color;
+
+import java.util.Arrays;
+
+/**
+ * Storage for the draw commands recorded by a SpriteBatch in a deferred SortMode. Each command is a single quad stored
+ * in primitive arrays along with a 64 bit sort key, and the commands are ordered with a stable LSD radix sort on the
+ * keys. Arrays only grow, so once a SpriteBatch has recorded its largest frame no more allocation takes place.
+ */
+final class DrawCommandBuffer
+{
+    // Command data: x, y, width, height, rotation, scale, s0, t0, s1, t1, r, g, b, a. The color is copied, since Color
+    // is mutable & callers may reuse one instance for every draw
+    static final int STRIDE = 14;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private float[] data;
+    private Texture[] textures;
+    private boolean[] useCamera;
+    private long[] keys;
+    private int[] order;
+    private long[] tmpKeys;
+    private int[] tmpOrder;
+    private final int[] histogram;
+    private int count;
+
+    // GL textures seen this frame, in the order they were first seen. A texture's index is its sort key component.
+    private GLTexture[] seenTextures;
+    private int seenCount;
+    private int lastSeen;
+
+    DrawCommandBuffer()
+    {
+        this.data = new float[INITIAL_CAPACITY * STRIDE];
+        this.textures = new Texture[INITIAL_CAPACITY];
+        this.useCamera = new boolean[INITIAL_CAPACITY];
+        this.keys = new long[INITIAL_CAPACITY];
+        this.order = new int[INITIAL_CAPACITY];
+        this.tmpKeys = new long[INITIAL_CAPACITY];
+        this.tmpOrder = new int[INITIAL_CAPACITY];
+        this.histogram = new int[256];
+        this.seenTextures = new GLTexture[64];
+        this.clear();
+    }
+
+    void clear()
+    {
+        // Drop references so disposed textures can be collected
+        Arrays.fill(this.textures, 0, this.count, null);
+        Arrays.fill(this.seenTextures, 0, this.seenCount, null);
+        this.count = 0;
+        this.seenCount = 0;
+        this.lastSeen = 0;
+    }
+
+    int size()
+    {
+        return this.count;
+    }
+
+    /**
+     * Method to record a single quad draw command
+     *
+     * @param mode the sort mode the command is sorted by
+     * @param layer the layer of the command (clamped to a signed 16 bit value)
+     * @param depth the depth of the command within its layer (clamped to [0, 1], lower depths are drawn first)
+     */
+    void add(SortMode mode, int layer, float depth, Texture texture, Color c, boolean camera, float x, float y, float w, float h, float rotation, float scale, float s0, float t0, float s1, float t1)
+    {
+        if(this.count == this.keys.length)
+            this.grow();
+
+        int i = this.count;
+        int d = i * STRIDE;
+        this.data[d] = x;
+        this.data[d + 1] = y;
+        this.data[d + 2] = w;
+        this.data[d + 3] = h;
+        this.data[d + 4] = rotation;
+        this.data[d + 5] = scale;
+        this.data[d + 6] = s0;
+        this.data[d + 7] = t0;
+        this.data[d + 8] = s1;
+        this.data[d + 9] = t1;
+        this.data[d + 10] = c.r();
+        this.data[d + 11] = c.g();
+        this.data[d + 12] = c.b();
+        this.data[d + 13] = c.a();
+        this.textures[i] = texture;
+        this.useCamera[i] = camera;
+
+        // Key: layer (16 bits) | texture & depth (16 bits each, order depending on the mode) | unused (16 bits)
+        long l = (Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, layer)) + 32768) & 0xFFFFL;
+        long t = this.textureIndex(texture.getGLTexture()) & 0xFFFFL;
+        long z = (long) (Math.max(0.0f, Math.min(1.0f, depth)) * 65535.0f) & 0xFFFFL;
+        if(mode == SortMode.Depth)
+            this.keys[i] = (l << 48) | (z << 32) | (t << 16);
+        else
+            this.keys[i] = (l << 48) | (t << 32) | (z << 16);
+
+        this.count++;
+    }
+
+    /**
+     * Method to sort the recorded commands by their keys. Commands with equal keys keep the order they were recorded in.
+     */
+    void sort()
+    {
+        int n = this.count;
+        long[] k = this.keys;
+        int[] o = this.order;
+        long[] k2 = this.tmpKeys;
+        int[] o2 = this.tmpOrder;
+        for(int i = 0; i < n; i++)
+            o[i] = i;
+
+        for(int shift = 0; shift < 64 && n > 1; shift += 8)
+        {
+            Arrays.fill(this.histogram, 0);
+            for(int i = 0; i < n; i++)
+                this.histogram[(int) ((k[i] >>> shift) & 0xFF)]++;
+
+            // Skip passes where every key has the same byte (i.e. the unused bits, or a single layer)
+            if(this.histogram[(int) ((k[0] >>> shift) & 0xFF)] == n)
+                continue;
+
+            int sum = 0;
+            for(int b = 0; b < 256; b++)
+            {
+                int c = this.histogram[b];
+                this.histogram[b] = sum;
+                sum += c;
+            }
+
+            for(int i = 0; i < n; i++)
+            {
+                int pos = this.histogram[(int) ((k[i] >>> shift) & 0xFF)]++;
+                k2[pos] = k[i];
+                o2[pos] = o[i];
+            }
+
+            long[] tk = k; k = k2; k2 = tk;
+            int[] to = o; o = o2; o2 = to;
+        }
+
+        this.keys = k;
+        this.order = o;
+        this.tmpKeys = k2;
+        this.tmpOrder = o2;
+    }
+
+    /**
+     * @param i position in the sorted order
+     * @return the index of the i-th command after sorting
+     */
+    int get(int i)
+    {
+        return this.order[i];
+    }
+
+    float[] getData()
+    {
+        return this.data;
+    }
+
+    Texture getTexture(int command)
+    {
+        return this.textures[command];
+    }
+
+    boolean useCamera(int command)
+    {
+        return this.useCamera[command];
+    }
+
+    private int textureIndex(GLTexture texture)
+    {
+        if(this.seenCount > 0 && this.seenTextures[this.lastSeen] == texture)
+            return this.lastSeen;
+
+        for(int i = 0; i < this.seenCount; i++)
+        {
+            if(this.seenTextures[i] == texture)
+            {
+                this.lastSeen = i;
+                return i;
+            }
+        }
+
+        if(this.seenCount == this.seenTextures.length)
+            this.seenTextures = Arrays.copyOf(this.seenTextures, this.seenCount * 2);
+
+        this.seenTextures[this.seenCount] = texture;
+        this.lastSeen = this.seenCount;
+        return this.seenCount++;
+    }
+
+    private void grow()
+    {
+        int capacity = this.keys.length * 2;
+        this.data = Arrays.copyOf(this.data, capacity * STRIDE);
+        this.textures = Arrays.copyOf(this.textures, capacity);
+        this.useCamera = Arrays.copyOf(this.useCamera, capacity);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.order = new int[capacity];
+        this.tmpKeys = new long[capacity];
+        this.tmpOrder = new int[capacity];
+    }
+}
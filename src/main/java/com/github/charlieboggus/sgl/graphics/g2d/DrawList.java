@@ -0,0 +1,152 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.utility.Color;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * List of transformed quads that can be recorded on any thread and drawn later by SpriteBatch.drawList on the render
+ * thread. Each worker thread should fill its own DrawList: the quads are transformed on the recording thread and
+ * written to an off-heap buffer in the SpriteBatch vertex format, so merging a list only has to copy the vertices and
+ * assign texture slots. A DrawList is not thread safe and makes no GL calls.
+ */
+public class DrawList
+{
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // Scratch storage for the world space corners of the quad currently being drawn
+    private final float[] quad = new float[8];
+
+    private final boolean compact;
+    private final int vertexSize;
+
+    private ByteBuffer vertices;
+    private Texture[] textures;
+    private int quadsCount;
+
+    public DrawList()
+    {
+        this(false, DEFAULT_CAPACITY);
+    }
+
+    public DrawList(boolean compact)
+    {
+        this(compact, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new DrawList
+     *
+     * @param compact true to record vertices in the compact vertex format, false for the default vertex format. Must
+     *                match the SpriteBatch the list is drawn by.
+     * @param capacity the initial number of quads the list can hold (the list grows as needed)
+     */
+    public DrawList(boolean compact, int capacity)
+    {
+        this.compact = compact;
+        this.vertexSize = SpriteBatch.getVertexSize(compact);
+        this.vertices = BufferUtils.createByteBuffer(Math.max(1, capacity) * 4 * this.vertexSize);
+        this.textures = new Texture[Math.max(1, capacity)];
+        this.quadsCount = 0;
+    }
+
+    /**
+     * Method to clear the list so it can be recorded again. Keeps the memory allocated by the list.
+     */
+    public void clear()
+    {
+        Arrays.fill(this.textures, 0, this.quadsCount, null);
+        this.vertices.clear();
+        this.quadsCount = 0;
+    }
+
+    public boolean isCompact()
+    {
+        return this.compact;
+    }
+
+    public int getQuadsCount()
+    {
+        return this.quadsCount;
+    }
+
+    // Draw Methods ----------------------------------------------------------------------------------------------------
+
+    public void drawTexture(Texture texture, float x, float y)
+    {
+        this.drawTexture(texture, x, y, 0.0f, 1.0f, Color.White, true);
+    }
+
+    public void drawTexture(Texture texture, float x, float y, Color c)
+    {
+        this.drawTexture(texture, x, y, 0.0f, 1.0f, c, true);
+    }
+
+    public void drawTexture(Texture texture, float x, float y, float rotation, float scale)
+    {
+        this.drawTexture(texture, x, y, rotation, scale, Color.White, true);
+    }
+
+    public void drawTexture(Texture texture, float x, float y, float rotation, float scale, Color c)
+    {
+        this.drawTexture(texture, x, y, rotation, scale, c, true);
+    }
+
+    /**
+     * Method for recording a texture to be drawn. Takes the same parameters as SpriteBatch.drawTexture.
+     *
+     * @param texture The texture to draw
+     * @param x x-position to draw the texture at (xpos of upper left corner)
+     * @param y y-position to draw the texture at (ypos of upper left corner)
+     * @param rotation the angle of rotation to rotate the texture (in degrees)
+     * @param scale the scale of the texture
+     * @param c the color to tint the texture
+     * @param useCamera true to make the drawn texture affected by the camera, false otherwise
+     */
+    public void drawTexture(Texture texture, float x, float y, float rotation, float scale, Color c, boolean useCamera)
+    {
+        if(this.quadsCount == this.textures.length)
+            this.grow();
+
+        QuadTransform.transform(this.quad, x, y, texture.getWidth(), texture.getHeight(), rotation, scale);
+        float[] q = this.quad;
+
+        // The texture slot is filled in by the SpriteBatch, only the camera flag is known here
+        int flags = useCamera ? 0 : SpriteBatch.NO_CAMERA_FLAG;
+        int packed = this.compact ? c.toNativeRGBA8888() : 0;
+        SpriteBatch.putVertex(this.vertices, this.compact, q[0], q[1], c.r(), c.g(), c.b(), c.a(), packed, texture.getS0(), texture.getT0(), flags);
+        SpriteBatch.putVertex(this.vertices, this.compact, q[2], q[3], c.r(), c.g(), c.b(), c.a(), packed, texture.getS1(), texture.getT0(), flags);
+        SpriteBatch.putVertex(this.vertices, this.compact, q[4], q[5], c.r(), c.g(), c.b(), c.a(), packed, texture.getS1(), texture.getT1(), flags);
+        SpriteBatch.putVertex(this.vertices, this.compact, q[6], q[7], c.r(), c.g(), c.b(), c.a(), packed, texture.getS0(), texture.getT1(), flags);
+
+        this.textures[this.quadsCount++] = texture;
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    /**
+     * Method to get the recorded vertices. The returned buffer's position is the end of the recorded vertices.
+     */
+    ByteBuffer getVertices()
+    {
+        return this.vertices;
+    }
+
+    Texture getTexture(int quad)
+    {
+        return this.textures[quad];
+    }
+
+    private void grow()
+    {
+        int capacity = this.textures.length * 2;
+        ByteBuffer buffer = BufferUtils.createByteBuffer(capacity * 4 * this.vertexSize);
+        this.vertices.flip();
+        buffer.put(this.vertices);
+        this.vertices = buffer;
+        this.textures = Arrays.copyOf(this.textures, capacity);
+    }
+}
@@ -0,0 +1,305 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.graphics.gl.GLShaderProgram;
+import com.github.charlieboggus.sgl.graphics.gl.GLState;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexArray;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexBuffer;
+import com.github.charlieboggus.sgl.utility.Color;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.joml.Matrix4f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL31.glDrawArraysInstanced;
+
+/**
+ * Sprite renderer that draws every sprite as an instance of a single unit quad. Instead of transforming 4 vertices per
+ * sprite on the CPU like SpriteBatch, only a 40 byte instance (position, size, origin, rotation, texture region and
+ * color) is written per sprite and the vertex shader expands the quad. All sprites drawn between two flushes must
+ * share the same GL texture (TextureRegions of the same texture are fine).
+ */
+public class InstancedSpriteBatch
+{
+    private static final Logger logger = Logger.getLogger(InstancedSpriteBatch.class);
+
+    // Maximum number of instances per draw call
+    private static final int MAX_INSTANCES = 16384;
+
+    // Instance: position (2 floats), size (2 floats), origin (2 floats), rotation (1 float), texture region (4
+    // normalized ushorts), color (4 normalized ubytes) = 40 bytes
+    private static final int INSTANCE_SIZE = 7 * Float.BYTES + 4 * Short.BYTES + 4;
+
+    private final Matrix4f projection = new Matrix4f();
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f projectionView = new Matrix4f();
+
+    private final GLShaderProgram program;
+    private final GLVertexArray vao;
+    private final GLVertexBuffer quad;
+    private final GLVertexBuffer instances;
+
+    private ByteBuffer buffer;
+    private int instancesCount;
+
+    private Texture image0;
+    private Camera camera;
+
+    private boolean isDrawing;
+    private int calls;
+    private int totalCalls;
+
+    public InstancedSpriteBatch()
+    {
+        // Initialize Renderer state
+        this.buffer = BufferUtils.createByteBuffer(MAX_INSTANCES * INSTANCE_SIZE);
+        this.instancesCount = 0;
+
+        this.image0 = null;
+        this.camera = null;
+
+        this.isDrawing = false;
+        this.calls = 0;
+        this.totalCalls = 0;
+
+        // Create the Shader Program
+        this.program = new GLShaderProgram();
+        this.program.loadShaders("shaders/instanced.vs", "shaders/instanced.fs");
+        this.program.link();
+        this.program.validate();
+
+        // Create the Vertex Array & Buffers
+        this.vao = new GLVertexArray();
+        this.vao.bind();
+            // Unit quad corners, drawn as a triangle strip
+            this.quad = new GLVertexBuffer();
+            this.quad.bind();
+            this.quad.uploadBufferData(new float[] { 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f }, GL_STATIC_DRAW);
+            this.vao.setVertexAttributePointer(0, 2, GL_FLOAT, 2 * Float.BYTES, 0);
+            this.vao.enableVertexAttribute(0);
+
+            // Per instance attributes (pointers are set at draw time, see setInstanceAttributes)
+            this.instances = new GLVertexBuffer();
+            this.instances.bind();
+            this.instances.createStreamingStorage(this.buffer.capacity() + INSTANCE_SIZE);
+            for(int i = 1; i <= 6; i++)
+            {
+                this.vao.enableVertexAttribute(i);
+                this.vao.setVertexAttributeDivisor(i, 1);
+            }
+            this.setInstanceAttributes(0);
+        this.vao.unbind();
+        this.instances.unbind();
+    }
+
+    public void dispose()
+    {
+        this.instances.destroy();
+        this.quad.destroy();
+        this.vao.destroy();
+        this.program.destroy();
+    }
+
+    public void setCamera(Camera camera)
+    {
+        this.camera = camera;
+    }
+
+    public int getRenderCalls()
+    {
+        return this.calls;
+    }
+
+    public int getTotalRenderCalls()
+    {
+        return this.totalCalls;
+    }
+
+    public void begin()
+    {
+        if(this.isDrawing)
+            logger.error("InstancedSpriteBatch is already drawing!");
+        else
+        {
+            // Reset the projection and view matrices at the beginning of each render cycle
+            this.projection.identity();
+            this.projection.ortho2D(0.0f, Display.getViewportWidth(), Display.getViewportHeight(), 0.0f);
+            this.view.identity();
+            if(this.camera != null)
+                this.view.set(this.camera.getViewMatrix());
+            this.projectionView.set(this.projection).mul(this.view);
+
+            // Bind the shader program & set global uniforms
+            this.program.bind();
+            this.program.setUniform1i("image0", 0);
+            this.program.setUniformMatrix4fv("projectionView", this.projectionView);
+
+            // Set the OpenGL state
+            GLState.enable(GL_BLEND);
+            GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+            if(Display.getAntialiasMode().isMultisampled())
+                GLState.enable(GL_MULTISAMPLE);
+
+            // Set the renderer state
+            this.buffer.clear();
+            this.instancesCount = 0;
+            this.image0 = null;
+            this.isDrawing = true;
+            this.calls = 0;
+        }
+    }
+
+    public void end()
+    {
+        if(!this.isDrawing)
+            logger.error("InstancedSpriteBatch is not currently drawing!");
+        else
+        {
+            // Flush the renderer if there are still instances remaining
+            if(this.instancesCount > 0)
+                this.flush();
+
+            // Unbind the vertex array & Shader Program
+            this.vao.unbind();
+            this.program.unbind();
+
+            // Reset the Renderer state
+            this.buffer.clear();
+            this.instancesCount = 0;
+            this.image0 = null;
+            this.isDrawing = false;
+        }
+    }
+
+    private void flush()
+    {
+        if(this.instancesCount > 0)
+        {
+            this.buffer.flip();
+
+            // Draw
+            this.image0.touch();
+            this.image0.bind();
+            this.vao.bind();
+            this.instances.bind();
+            int offset = this.instances.streamBufferData(this.buffer, INSTANCE_SIZE);
+            this.setInstanceAttributes(offset);
+
+            glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, this.instancesCount);
+
+            // Increment render call counters
+            this.calls++;
+            this.totalCalls++;
+        }
+
+        // Reset the drawing state
+        this.buffer.clear();
+        this.instancesCount = 0;
+        this.image0 = null;
+    }
+
+    // Draw Methods ----------------------------------------------------------------------------------------------------
+
+    public void drawTexture(Texture texture, float x, float y)
+    {
+        this.drawTexture(texture, x, y, 0.0f, 1.0f, Color.White);
+    }
+
+    public void drawTexture(Texture texture, float x, float y, Color c)
+    {
+        this.drawTexture(texture, x, y, 0.0f, 1.0f, c);
+    }
+
+    public void drawTexture(Texture texture, float x, float y, float rotation)
+    {
+        this.drawTexture(texture, x, y, rotation, 1.0f, Color.White);
+    }
+
+    public void drawTexture(Texture texture, float x, float y, float rotation, float scale)
+    {
+        this.drawTexture(texture, x, y, rotation, scale, Color.White);
+    }
+
+    /**
+     * Method for drawing a given texture rotated around its center. This matches SpriteBatch.drawTexture.
+     *
+     * @param texture The texture to draw to the screen
+     * @param x x-position to draw the texture at (xpos of upper left corner)
+     * @param y y-position to draw the texture at (ypos of upper left corner)
+     * @param rotation the angle of rotation to rotate the texture (in degrees)
+     * @param scale the scale of the texture
+     * @param c the color to tint the texture
+     */
+    public void drawTexture(Texture texture, float x, float y, float rotation, float scale, Color c)
+    {
+        float w = texture.getWidth();
+        float h = texture.getHeight();
+        this.drawTexture(texture, x, y, 0.5f * w, 0.5f * h, rotation, scale * w, scale * h, c);
+    }
+
+    /**
+     * Method for drawing a given texture as a single instance
+     *
+     * @param texture The texture to draw to the screen
+     * @param x x-position to draw the texture at (xpos of upper left corner before rotation)
+     * @param y y-position to draw the texture at (ypos of upper left corner before rotation)
+     * @param originX x-position of the point to rotate around (relative to x)
+     * @param originY y-position of the point to rotate around (relative to y)
+     * @param rotation the angle of rotation to rotate the texture (in degrees)
+     * @param width the width to draw the texture at
+     * @param height the height to draw the texture at
+     * @param c the color to tint the texture
+     */
+    public void drawTexture(Texture texture, float x, float y, float originX, float originY, float rotation, float width, float height, Color c)
+    {
+        // Flush if the texture changes or the instance buffer is full
+        if(this.image0 == null)
+            this.image0 = texture;
+        else if(this.image0.getGLTexture() != texture.getGLTexture() || this.instancesCount == MAX_INSTANCES)
+        {
+            this.flush();
+            this.image0 = texture;
+        }
+
+        this.buffer.putFloat(x).putFloat(y);
+        this.buffer.putFloat(width).putFloat(height);
+        this.buffer.putFloat(originX).putFloat(originY);
+        this.buffer.putFloat((float) Math.toRadians(rotation));
+        this.buffer.putShort(packUV(texture.getS0())).putShort(packUV(texture.getT0()));
+        this.buffer.putShort(packUV(texture.getS1())).putShort(packUV(texture.getT1()));
+        this.buffer.putInt(c.toNativeRGBA8888());
+        this.instancesCount++;
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    /**
+     * Method for pointing the per instance attributes at the instance data starting at the given offset of the
+     * instance buffer. GL 3.3 has no base instance parameter for instanced draws, so this is done for every flush.
+     * The vertex array and instance buffer must be bound.
+     *
+     * @param offset offset (in bytes) of the first instance in the instance buffer
+     */
+    private void setInstanceAttributes(int offset)
+    {
+        // Position, Size, Origin & Rotation
+        this.vao.setVertexAttributePointer(1, 2, GL_FLOAT, INSTANCE_SIZE, offset);
+        this.vao.setVertexAttributePointer(2, 2, GL_FLOAT, INSTANCE_SIZE, offset + 2 * Float.BYTES);
+        this.vao.setVertexAttributePointer(3, 2, GL_FLOAT, INSTANCE_SIZE, offset + 4 * Float.BYTES);
+        this.vao.setVertexAttributePointer(4, 1, GL_FLOAT, INSTANCE_SIZE, offset + 6 * Float.BYTES);
+
+        // Texture Region & Color
+        this.vao.setVertexAttributePointer(5, 4, GL_UNSIGNED_SHORT, true, INSTANCE_SIZE, offset + 7 * Float.BYTES);
+        this.vao.setVertexAttributePointer(6, 4, GL_UNSIGNED_BYTE, true, INSTANCE_SIZE, offset + 7 * Float.BYTES + 8);
+    }
+
+    private static short packUV(float uv)
+    {
+        return (short) (uv * 65535.0f + 0.5f);
+    }
+}
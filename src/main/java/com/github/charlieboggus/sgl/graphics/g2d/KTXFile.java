@@ -0,0 +1,212 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.utility.FileIO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.*;
+import static org.lwjgl.opengl.EXTTextureSRGB.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL42.*;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Reader for KTX (version 1 & 2) texture containers. Only 2D textures (a single face & array layer) are supported.
+ * KTX 2 files must not be supercompressed, and their Vulkan format must be one of the BC, ETC2 or 8 bit RGB(A)
+ * formats mapped by setVulkanFormat. The mip levels are slices of the file contents, largest first.
+ */
+final class KTXFile
+{
+    private static final byte[] KTX1_IDENTIFIER = { (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n' };
+    private static final byte[] KTX2_IDENTIFIER = { (byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n' };
+
+    private static final int KTX1_HEADER_SIZE = 64;
+    private static final int KTX2_HEADER_SIZE = 80;
+    private static final int KTX2_LEVEL_ENTRY_SIZE = 24;
+
+    // GL internal format, format & type (format & type are 0 for compressed formats)
+    int internalFormat;
+    int format;
+    int type;
+
+    int width;
+    int height;
+    ByteBuffer[] levels;
+
+    // Uncompressed KTX 1 rows are padded to 4 bytes, KTX 2 rows are tightly packed
+    int rowAlignment;
+
+    // KTX 1 files without mip levels ask for them to be generated on load
+    boolean generateMipmaps;
+
+    private KTXFile()
+    {
+    }
+
+    /**
+     * Method to check if a file is a KTX container (by its extension)
+     *
+     * @param file the file name to check
+     * @return true if the file is a .ktx or .ktx2 file, false otherwise
+     */
+    static boolean isKTX(String file)
+    {
+        String name = file.toLowerCase();
+        return name.endsWith(".ktx") || name.endsWith(".ktx2");
+    }
+
+    boolean isCompressed()
+    {
+        return this.type == 0;
+    }
+
+    /**
+     * Method to read a KTX container
+     *
+     * @param file the file to read
+     * @return the texture stored in the container
+     * @throws IOException if the file can't be read or isn't a supported KTX container
+     */
+    static KTXFile read(String file) throws IOException
+    {
+        ByteBuffer data = FileIO.readByteBuffer(file).order(ByteOrder.LITTLE_ENDIAN);
+        if(matches(data, KTX1_IDENTIFIER))
+            return readKTX1(data);
+        if(matches(data, KTX2_IDENTIFIER))
+            return readKTX2(data);
+        throw new IOException("Not a KTX file: " + file);
+    }
+
+    private static KTXFile readKTX1(ByteBuffer data) throws IOException
+    {
+        if(data.limit() < KTX1_HEADER_SIZE)
+            throw new IOException("Truncated KTX header");
+        if(data.getInt(12) == 0x01020304)
+            data.order(ByteOrder.BIG_ENDIAN);
+
+        KTXFile ktx = new KTXFile();
+        ktx.rowAlignment = 4;
+        ktx.type = data.getInt(16);
+        ktx.format = data.getInt(24);
+        ktx.internalFormat = data.getInt(28);
+        ktx.width = data.getInt(36);
+        ktx.height = Math.max(1, data.getInt(40));
+        if(data.getInt(44) > 1 || data.getInt(48) > 1 || data.getInt(52) > 1)
+            throw new IOException("Only 2D KTX textures are supported");
+        if(!ktx.isCompressed() && ktx.type != GL_UNSIGNED_BYTE)
+            throw new IOException("Unsupported KTX pixel type: " + ktx.type);
+
+        ktx.generateMipmaps = data.getInt(56) == 0;
+        int levelsCount = Math.max(1, data.getInt(56));
+        int offset = KTX1_HEADER_SIZE + data.getInt(60);
+        ktx.levels = new ByteBuffer[levelsCount];
+        for(int i = 0; i < levelsCount; i++)
+        {
+            if(offset + 4 > data.limit())
+                throw new IOException("Truncated KTX mip level " + i);
+            int size = data.getInt(offset);
+            ktx.levels[i] = slice(data, offset + 4, size);
+            offset += 4 + ((size + 3) & ~3);
+        }
+
+        return ktx;
+    }
+
+    private static KTXFile readKTX2(ByteBuffer data) throws IOException
+    {
+        if(data.limit() < KTX2_HEADER_SIZE)
+            throw new IOException("Truncated KTX2 header");
+
+        KTXFile ktx = new KTXFile();
+        ktx.rowAlignment = 1;
+        int vkFormat = data.getInt(12);
+        ktx.width = data.getInt(20);
+        ktx.height = Math.max(1, data.getInt(24));
+        if(data.getInt(28) > 1 || data.getInt(32) > 1 || data.getInt(36) > 1)
+            throw new IOException("Only 2D KTX2 textures are supported");
+        if(data.getInt(44) != 0)
+            throw new IOException("Supercompressed KTX2 textures are not supported");
+        if(!ktx.setVulkanFormat(vkFormat))
+            throw new IOException("Unsupported KTX2 format: " + vkFormat);
+
+        int levelsCount = Math.max(1, data.getInt(40));
+        ktx.levels = new ByteBuffer[levelsCount];
+        for(int i = 0; i < levelsCount; i++)
+        {
+            int entry = KTX2_HEADER_SIZE + i * KTX2_LEVEL_ENTRY_SIZE;
+            if(entry + KTX2_LEVEL_ENTRY_SIZE > data.limit())
+                throw new IOException("Truncated KTX2 level index");
+            ktx.levels[i] = slice(data, (int) data.getLong(entry), (int) data.getLong(entry + 8));
+        }
+
+        return ktx;
+    }
+
+    /**
+     * Method to map a Vulkan format to the equivalent GL format
+     *
+     * @return true if the format is supported, false otherwise
+     */
+    private boolean setVulkanFormat(int vkFormat)
+    {
+        this.format = 0;
+        this.type = 0;
+        switch(vkFormat)
+        {
+            case 23:  this.setUncompressed(GL_RGB8, GL_RGB); return true;     // R8G8B8_UNORM
+            case 37:  this.setUncompressed(GL_RGBA8, GL_RGBA); return true;   // R8G8B8A8_UNORM
+            case 131: this.internalFormat = GL_COMPRESSED_RGB_S3TC_DXT1_EXT; return true;
+            case 132: this.internalFormat = GL_COMPRESSED_SRGB_S3TC_DXT1_EXT; return true;
+            case 133: this.internalFormat = GL_COMPRESSED_RGBA_S3TC_DXT1_EXT; return true;
+            case 134: this.internalFormat = GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT; return true;
+            case 135: this.internalFormat = GL_COMPRESSED_RGBA_S3TC_DXT3_EXT; return true;
+            case 136: this.internalFormat = GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT; return true;
+            case 137: this.internalFormat = GL_COMPRESSED_RGBA_S3TC_DXT5_EXT; return true;
+            case 138: this.internalFormat = GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT; return true;
+            case 139: this.internalFormat = GL_COMPRESSED_RED_RGTC1; return true;
+            case 140: this.internalFormat = GL_COMPRESSED_SIGNED_RED_RGTC1; return true;
+            case 141: this.internalFormat = GL_COMPRESSED_RG_RGTC2; return true;
+            case 142: this.internalFormat = GL_COMPRESSED_SIGNED_RG_RGTC2; return true;
+            case 145: this.internalFormat = GL_COMPRESSED_RGBA_BPTC_UNORM; return true;
+            case 146: this.internalFormat = GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM; return true;
+            case 147: this.internalFormat = GL_COMPRESSED_RGB8_ETC2; return true;
+            case 148: this.internalFormat = GL_COMPRESSED_SRGB8_ETC2; return true;
+            case 149: this.internalFormat = GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2; return true;
+            case 150: this.internalFormat = GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2; return true;
+            case 151: this.internalFormat = GL_COMPRESSED_RGBA8_ETC2_EAC; return true;
+            case 152: this.internalFormat = GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC; return true;
+            default:  return false;
+        }
+    }
+
+    private void setUncompressed(int internalFormat, int format)
+    {
+        this.internalFormat = internalFormat;
+        this.format = format;
+        this.type = GL_UNSIGNED_BYTE;
+    }
+
+    private static boolean matches(ByteBuffer data, byte[] identifier)
+    {
+        if(data.limit() < identifier.length)
+            return false;
+        for(int i = 0; i < identifier.length; i++)
+        {
+            if(data.get(i) != identifier[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int size) throws IOException
+    {
+        if(offset < 0 || size < 0 || offset + size > data.limit())
+            throw new IOException("KTX mip level is out of bounds");
+        ByteBuffer level = data.duplicate();
+        level.position(offset).limit(offset + size);
+        return level.slice();
+    }
+}
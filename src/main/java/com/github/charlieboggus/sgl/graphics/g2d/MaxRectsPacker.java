@@ -0,0 +1,139 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MaxRects bin packer (best short side fit). Keeps the list of maximal free rectangles of a single bin and places each
+ * rectangle in the free rectangle that leaves the smallest leftover on its shorter side. Rectangles are never rotated.
+ */
+final class MaxRectsPacker
+{
+    private final int width;
+    private final int height;
+
+    // Free rectangles as { x, y, width, height }
+    private final List<int[]> free = new ArrayList<>();
+
+    MaxRectsPacker(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.free.add(new int[] { 0, 0, width, height });
+    }
+
+    int getWidth()
+    {
+        return this.width;
+    }
+
+    int getHeight()
+    {
+        return this.height;
+    }
+
+    /**
+     * Method to place a rectangle in the bin
+     *
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the placed rectangle as { x, y, width, height }, or null if it doesn't fit into the bin
+     */
+    int[] insert(int width, int height)
+    {
+        int[] best = null;
+        int bestShort = Integer.MAX_VALUE;
+        int bestLong = Integer.MAX_VALUE;
+        for(int[] f : this.free)
+        {
+            if(f[2] < width || f[3] < height)
+                continue;
+
+            int leftoverX = f[2] - width;
+            int leftoverY = f[3] - height;
+            int shortSide = Math.min(leftoverX, leftoverY);
+            int longSide = Math.max(leftoverX, leftoverY);
+            if(shortSide < bestShort || (shortSide == bestShort && longSide < bestLong))
+            {
+                best = new int[] { f[0], f[1], width, height };
+                bestShort = shortSide;
+                bestLong = longSide;
+            }
+        }
+
+        if(best != null)
+            this.place(best);
+        return best;
+    }
+
+    private void place(int[] used)
+    {
+        // Split every free rectangle the placed rectangle overlaps (new rectangles are appended after count)
+        int count = this.free.size();
+        for(int i = 0; i < count; i++)
+        {
+            if(this.split(this.free.get(i), used))
+            {
+                this.free.remove(i);
+                i--;
+                count--;
+            }
+        }
+        this.prune();
+    }
+
+    private boolean split(int[] f, int[] u)
+    {
+        if(u[0] >= f[0] + f[2] || u[0] + u[2] <= f[0] || u[1] >= f[1] + f[3] || u[1] + u[3] <= f[1])
+            return false;
+
+        if(u[0] < f[0] + f[2] && u[0] + u[2] > f[0])
+        {
+            // Free space above & below the placed rectangle
+            if(u[1] > f[1] && u[1] < f[1] + f[3])
+                this.free.add(new int[] { f[0], f[1], f[2], u[1] - f[1] });
+            if(u[1] + u[3] < f[1] + f[3])
+                this.free.add(new int[] { f[0], u[1] + u[3], f[2], f[1] + f[3] - (u[1] + u[3]) });
+        }
+
+        if(u[1] < f[1] + f[3] && u[1] + u[3] > f[1])
+        {
+            // Free space left & right of the placed rectangle
+            if(u[0] > f[0] && u[0] < f[0] + f[2])
+                this.free.add(new int[] { f[0], f[1], u[0] - f[0], f[3] });
+            if(u[0] + u[2] < f[0] + f[2])
+                this.free.add(new int[] { u[0] + u[2], f[1], f[0] + f[2] - (u[0] + u[2]), f[3] });
+        }
+
+        return true;
+    }
+
+    /**
+     * Method to remove free rectangles that are contained in another free rectangle
+     */
+    private void prune()
+    {
+        for(int i = 0; i < this.free.size(); i++)
+        {
+            for(int j = i + 1; j < this.free.size(); j++)
+            {
+                if(contains(this.free.get(j), this.free.get(i)))
+                {
+                    this.free.remove(i);
+                    i--;
+                    break;
+                }
+                if(contains(this.free.get(i), this.free.get(j)))
+                {
+                    this.free.remove(j);
+                    j--;
+                }
+            }
+        }
+    }
+
+    private static boolean contains(int[] a, int[] b)
+    {
+        return b[0] >= a[0] && b[1] >= a[1] && b[0] + b[2] <= a[0] + a[2] && b[1] + b[3] <= a[1] + a[3];
+    }
+}
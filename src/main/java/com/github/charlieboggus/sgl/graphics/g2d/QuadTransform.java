@@ -0,0 +1,106 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import org.joml.Rectanglef;
+
+/**
+ * Allocation free helper for computing the world space corners of a quad that is scaled and rotated around its center.
+ */
+final class QuadTransform
+{
+    private QuadTransform()
+    {
+    }
+
+    /**
+     * Method for cheaply testing whether a quad might be visible. Unrotated quads are tested exactly, rotated quads are
+     * tested using the bounds of the circle they rotate within, so no trigonometry is needed either way.
+     *
+     * @param bounds the visible area, in the same space as the quad
+     * @param x x-position of the quad (xpos of upper left corner)
+     * @param y y-position of the quad (ypos of upper left corner)
+     * @param w width of the quad
+     * @param h height of the quad
+     * @param rotation the angle of rotation of the quad around its center (in degrees)
+     * @param scale the scale of the quad
+     * @return false if the quad is definitely outside of the bounds, true otherwise
+     */
+    static boolean intersects(Rectanglef bounds, float x, float y, float w, float h, float rotation, float scale)
+    {
+        float sw = scale * w;
+        float sh = scale * h;
+        float minX, minY, maxX, maxY;
+        if(rotation == 0.0f)
+        {
+            minX = Math.min(x, x + sw);
+            maxX = Math.max(x, x + sw);
+            minY = Math.min(y, y + sh);
+            maxY = Math.max(y, y + sh);
+        }
+        else
+        {
+            // The quad rotates around the center of its unscaled size, so use the furthest corner from that center
+            float cx = x + 0.5f * w;
+            float cy = y + 0.5f * h;
+            float dx = Math.max(Math.abs(x - cx), Math.abs(x + sw - cx));
+            float dy = Math.max(Math.abs(y - cy), Math.abs(y + sh - cy));
+            float r = (float) Math.sqrt(dx * dx + dy * dy);
+            minX = cx - r;
+            maxX = cx + r;
+            minY = cy - r;
+            maxY = cy + r;
+        }
+
+        return maxX >= bounds.minX && minX <= bounds.maxX && maxY >= bounds.minY && minY <= bounds.maxY;
+    }
+
+    /**
+     * Method for transforming the corners of a quad into world space. This is the scalar equivalent of building the
+     * model matrix translate(x, y) * translate(w / 2, h / 2) * rotateZ(rotation) * translate(-w / 2, -h / 2) *
+     * scale(scale * w, scale * h) and multiplying the unit quad corners by it. The results are written to out as x/y
+     * pairs in the order bottom left, bottom right, top right, top left.
+     *
+     * @param out array of (at least) 8 floats to write the transformed corners to
+     * @param x x-position of the quad (xpos of upper left corner)
+     * @param y y-position of the quad (ypos of upper left corner)
+     * @param w width of the quad
+     * @param h height of the quad
+     * @param rotation the angle of rotation of the quad around its center (in degrees)
+     * @param scale the scale of the quad
+     */
+    static void transform(float[] out, float x, float y, float w, float h, float rotation, float scale)
+    {
+        float hw = 0.5f * w;
+        float hh = 0.5f * h;
+        float sw = scale * w;
+        float sh = scale * h;
+
+        // Unrotated quads are by far the most common, so skip the trig for them
+        if(rotation == 0.0f)
+        {
+            out[0] = x;         out[1] = y;         // Bottom Left  (0, 0)
+            out[2] = x + sw;    out[3] = y;         // Bottom Right (1, 0)
+            out[4] = x + sw;    out[5] = y + sh;    // Top Right    (1, 1)
+            out[6] = x;         out[7] = y + sh;    // Top Left     (0, 1)
+            return;
+        }
+
+        // Use the same sin/cos as Matrix4f.rotateZ so the results match the matrix path
+        float rad = (float) Math.toRadians(rotation);
+        float sin = (float) org.joml.Math.sin(rad);
+        float cos = (float) org.joml.Math.cosFromSin(sin, rad);
+
+        // Model matrix as a 2D affine transform: [ a c tx ]
+        //                                        [ b d ty ]
+        float a = cos * sw;
+        float b = sin * sw;
+        float c = -sin * sh;
+        float d = cos * sh;
+        float tx = x + hw - cos * hw + sin * hh;
+        float ty = y + hh - sin * hw - cos * hh;
+
+        out[0] = tx;            out[1] = ty;            // Bottom Left  (0, 0)
+        out[2] = a + tx;        out[3] = b + ty;        // Bottom Right (1, 0)
+        out[4] = a + c + tx;    out[5] = b + d + ty;    // Top Right    (1, 1)
+        out[6] = c + tx;        out[7] = d + ty;        // Top Left     (0, 1)
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.graphics.gl.GLFramebuffer;
+import com.github.charlieboggus.sgl.graphics.gl.GLTexture;
+import com.github.charlieboggus.sgl.utility.Color;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL21.GL_SRGB8_ALPHA8;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Texture that can be drawn into by a SpriteBatch (see SpriteBatch.begin(RenderTexture)) and drawn like any other
+ * Texture afterwards. SpriteBatch renders into it with a flipped projection, so its contents are stored top row first
+ * like loaded textures and regions of it work as expected. A RenderTexture must not be drawn while it is the target of
+ * the batch drawing it. Use a RenderTexturePool for render textures that are only needed for part of a frame.
+ */
+public class RenderTexture extends Texture
+{
+    private static final Logger logger = Logger.getLogger(RenderTexture.class);
+
+    private final GLFramebuffer fbo;
+    private final int format;
+
+    // Frames since the render texture was last returned to its pool (used by RenderTexturePool)
+    int idleFrames;
+
+    public RenderTexture(int width, int height)
+    {
+        this(width, height, GL_RGBA8);
+    }
+
+    /**
+     * Creates a new RenderTexture
+     *
+     * @param width the width of the render texture in pixels
+     * @param height the height of the render texture in pixels
+     * @param format the internal format of the color attachment (i.e. GL_RGBA8). Normalized, float & integer color
+     *               formats with 1, 2 or 4 channels are supported (i.e. GL_RGBA16F, GL_RG32F, GL_RGBA8UI). Integer
+     *               formats can only be written by shaders with integer outputs & can't be filtered, so they're only
+     *               useful with custom shaders
+     */
+    public RenderTexture(int width, int height, int format)
+    {
+        super(createColorTexture(width, height, format), width, height);
+        this.format = format;
+        this.idleFrames = 0;
+
+        // Render textures can't be reloaded from a file, so they're tracked but never evicted
+        this.residency = TextureResidency.register(this.getGLTexture(), null, (long) width * height * getBytesPerPixel(format));
+
+        this.fbo = new GLFramebuffer();
+        this.fbo.createColorAttachment(this.getGLTexture());
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.fbo.destroy();
+        super.dispose();
+    }
+
+    public int getFormat()
+    {
+        return this.format;
+    }
+
+    /**
+     * Method to clear the render texture to the given color
+     *
+     * @param c the color to clear the render texture to
+     */
+    public void clear(Color c)
+    {
+        this.fbo.bind();
+        glClearColor(c.r(), c.g(), c.b(), c.a());
+        glClear(GL_COLOR_BUFFER_BIT);
+        this.fbo.unbind();
+    }
+
+    /**
+     * Method to redirect rendering into the render texture
+     */
+    void beginTarget()
+    {
+        this.fbo.bind();
+        glViewport(0, 0, this.getWidth(), this.getHeight());
+    }
+
+    /**
+     * Method to redirect rendering back to the display
+     */
+    void endTarget()
+    {
+        this.fbo.unbind();
+        glViewport(0, 0, Display.getViewportWidth(), Display.getViewportHeight());
+    }
+
+    private static GLTexture createColorTexture(int width, int height, int format)
+    {
+        GLTexture tex = new GLTexture();
+        tex.bind();
+
+        // No pixels are uploaded, but GL still requires a pixel format & type compatible with the internal format.
+        // Integer formats need an integer pixel format & can't use linear filtering
+        boolean integer = isInteger(format);
+        int channels = getChannels(format);
+        int pixelFormat;
+        if(channels == 1)
+            pixelFormat = integer ? GL_RED_INTEGER : GL_RED;
+        else if(channels == 2)
+            pixelFormat = integer ? GL_RG_INTEGER : GL_RG;
+        else
+            pixelFormat = integer ? GL_RGBA_INTEGER : GL_RGBA;
+        int type;
+        if(isSigned(format))
+            type = GL_INT;
+        else if(isUnsigned(format))
+            type = GL_UNSIGNED_INT;
+        else
+            type = isFloat(format) ? GL_FLOAT : GL_UNSIGNED_BYTE;
+
+        tex.uploadTextureData(format, width, height, pixelFormat, type, null);
+        tex.setWrap(GL_CLAMP_TO_EDGE, GL_CLAMP_TO_EDGE);
+        if(integer)
+            tex.setFilter(GL_NEAREST, GL_NEAREST);
+        else
+            tex.setFilter(GL_LINEAR, GL_LINEAR);
+        tex.unbind();
+        return tex;
+    }
+
+    /**
+     * Method to get the size of a pixel in the given internal format, used to count render textures against the
+     * texture budget
+     */
+    private static int getBytesPerPixel(int format)
+    {
+        switch(format)
+        {
+            case GL_R8: case GL_R8I: case GL_R8UI:
+                return 1;
+            case GL_RG8: case GL_RG8I: case GL_RG8UI:
+            case GL_R16: case GL_R16F: case GL_R16I: case GL_R16UI:
+                return 2;
+            case GL_RGBA8: case GL_SRGB8_ALPHA8: case GL_RGB10_A2: case GL_R11F_G11F_B10F: case GL_RGBA8I: case GL_RGBA8UI:
+            case GL_RG16: case GL_RG16F: case GL_RG16I: case GL_RG16UI:
+            case GL_R32F: case GL_R32I: case GL_R32UI:
+                return 4;
+            case GL_RGBA16: case GL_RGBA16F: case GL_RGBA16I: case GL_RGBA16UI:
+            case GL_RG32F: case GL_RG32I: case GL_RG32UI:
+                return 8;
+            case GL_RGBA32F: case GL_RGBA32I: case GL_RGBA32UI:
+                return 16;
+            default:
+                logger.warning("Unknown render texture format 0x" + Integer.toHexString(format) + ", counting it as 4 bytes per pixel");
+                return 4;
+        }
+    }
+
+    /**
+     * Method to get the number of channels of the pixel format matching the given internal format (GL_R11F_G11F_B10F
+     * & GL_RGB10_A2 are allocated as RGBA)
+     */
+    private static int getChannels(int format)
+    {
+        switch(format)
+        {
+            case GL_R8: case GL_R16: case GL_R16F: case GL_R32F:
+            case GL_R8I: case GL_R8UI: case GL_R16I: case GL_R16UI: case GL_R32I: case GL_R32UI:
+                return 1;
+            case GL_RG8: case GL_RG16: case GL_RG16F: case GL_RG32F:
+            case GL_RG8I: case GL_RG8UI: case GL_RG16I: case GL_RG16UI: case GL_RG32I: case GL_RG32UI:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    private static boolean isInteger(int format)
+    {
+        return isSigned(format) || isUnsigned(format);
+    }
+
+    private static boolean isSigned(int format)
+    {
+        switch(format)
+        {
+            case GL_R8I: case GL_R16I: case GL_R32I:
+            case GL_RG8I: case GL_RG16I: case GL_RG32I:
+            case GL_RGBA8I: case GL_RGBA16I: case GL_RGBA32I:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isUnsigned(int format)
+    {
+        switch(format)
+        {
+            case GL_R8UI: case GL_R16UI: case GL_R32UI:
+            case GL_RG8UI: case GL_RG16UI: case GL_RG32UI:
+            case GL_RGBA8UI: case GL_RGBA16UI: case GL_RGBA32UI:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFloat(int format)
+    {
+        switch(format)
+        {
+            case GL_R16F: case GL_RG16F: case GL_RGBA16F:
+            case GL_R32F: case GL_RG32F: case GL_RGBA32F:
+            case GL_R11F_G11F_B10F:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
+
+/**
+ * Frame scoped pool of render textures. Render textures obtained from the pool are returned to it by free, or
+ * automatically at the end of the frame, and handed out again to later requests of the same size & format. Render
+ * textures that haven't been used for MAX_IDLE_FRAMES frames are destroyed. The contents of a pooled render texture
+ * are undefined, so it should be cleared (or fully drawn over) before use.
+ */
+public class RenderTexturePool
+{
+    // Number of frames an unused render texture is kept around before it's destroyed
+    private static final int MAX_IDLE_FRAMES = 60;
+
+    private final List<RenderTexture> free = new ArrayList<>();
+    private final List<RenderTexture> used = new ArrayList<>();
+
+    private int created = 0;
+
+    public void dispose()
+    {
+        for(RenderTexture rt : this.free)
+            rt.dispose();
+        for(RenderTexture rt : this.used)
+            rt.dispose();
+        this.free.clear();
+        this.used.clear();
+    }
+
+    public RenderTexture obtain(int width, int height)
+    {
+        return this.obtain(width, height, GL_RGBA8);
+    }
+
+    /**
+     * Method to get a render texture from the pool, creating one if there is no free render texture of the given size
+     * & format. The render texture is returned to the pool at the end of the frame.
+     *
+     * @param width the width of the render texture in pixels
+     * @param height the height of the render texture in pixels
+     * @param format the internal format of the render texture
+     * @return a render texture with undefined contents
+     */
+    public RenderTexture obtain(int width, int height, int format)
+    {
+        RenderTexture rt = null;
+        for(int i = this.free.size() - 1; i >= 0; i--)
+        {
+            RenderTexture candidate = this.free.get(i);
+            if(candidate.getWidth() == width && candidate.getHeight() == height && candidate.getFormat() == format)
+            {
+                rt = this.free.remove(i);
+                break;
+            }
+        }
+
+        if(rt == null)
+        {
+            rt = new RenderTexture(width, height, format);
+            this.created++;
+        }
+
+        rt.idleFrames = 0;
+        this.used.add(rt);
+        return rt;
+    }
+
+    /**
+     * Method to return a render texture to the pool before the end of the frame, so it can be reused by a later request
+     * in the same frame
+     *
+     * @param rt a render texture obtained from this pool
+     */
+    public void free(RenderTexture rt)
+    {
+        if(this.used.remove(rt))
+            this.free.add(rt);
+    }
+
+    /**
+     * Method to end the current frame. Returns every render texture obtained during the frame to the pool and destroys
+     * the ones that have been idle for too long. Should be called once per frame after rendering.
+     */
+    public void endFrame()
+    {
+        for(int i = this.free.size() - 1; i >= 0; i--)
+        {
+            RenderTexture rt = this.free.get(i);
+            if(++rt.idleFrames > MAX_IDLE_FRAMES)
+            {
+                this.free.remove(i);
+                rt.dispose();
+            }
+        }
+
+        this.free.addAll(this.used);
+        this.used.clear();
+    }
+
+    /**
+     * Method to get the number of render textures held by the pool
+     *
+     * @return the number of free & in use render textures
+     */
+    public int getPooledCount()
+    {
+        return this.free.size() + this.used.size();
+    }
+
+    /**
+     * Method to get the number of render textures the pool has created (for profiling)
+     *
+     * @return the total number of render textures created by the pool
+     */
+    public int getCreatedCount()
+    {
+        return this.created;
+    }
+}
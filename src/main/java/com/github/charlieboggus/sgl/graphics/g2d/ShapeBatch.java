@@ -2,22 +2,24 @@ package com.github.charlieboggus.sgl.graphics.g2d;
 
 import com.github.charlieboggus.sgl.core.Display;
 import com.github.charlieboggus.sgl.graphics.gl.GLShaderProgram;
+import com.github.charlieboggus.sgl.graphics.gl.GLState;
 import com.github.charlieboggus.sgl.graphics.gl.GLVertexArray;
 import com.github.charlieboggus.sgl.graphics.gl.GLVertexBuffer;
 import com.github.charlieboggus.sgl.utility.Color;
 import com.github.charlieboggus.sgl.utility.Logger;
 
 import org.joml.Matrix4f;
+import org.joml.Rectanglef;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 import org.lwjgl.BufferUtils;
 
-import java.nio.FloatBuffer;
+import java.nio.ByteBuffer;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
-import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
 
 public class ShapeBatch
 {
@@ -29,15 +31,26 @@ public class ShapeBatch
 
     public static float DEFAULT_LINE_WIDTH = 1.0f;
 
+    // Size of the vertex buffer in bytes
+    private static final int BUFFER_SIZE = 65536 * Float.BYTES;
+
+    // Default vertex: position (2 floats), color (4 floats) = 24 bytes
+    private static final int VERTEX_SIZE = 6 * Float.BYTES;
+
+    // Compact vertex: position (2 floats), color (4 normalized ubytes) = 12 bytes
+    private static final int COMPACT_VERTEX_SIZE = 2 * Float.BYTES + 4;
+
     private static final String vertexShader =
             "#version 330 core\n" +
             "layout (location = 0) in vec2 pos;\n" +
             "layout (location = 1) in vec4 col;\n" +
             "out vec4 Color;\n" +
+            "uniform mat4 projection;\n" +
+            "uniform mat4 view;\n" +
             "void main()\n" +
             "{\n" +
             "Color = col;\n" +
-            "gl_Position = vec4(pos, 0.0, 1.0);\n" +
+            "gl_Position = projection * view * vec4(pos, 0.0, 1.0);\n" +
             "}";
 
     private static final String fragmentShader =
@@ -52,24 +65,55 @@ public class ShapeBatch
     private final Matrix4f projection = new Matrix4f();
     private final Matrix4f view = new Matrix4f();
 
+    // Visible areas used to cull quads drawn with and without the camera (updated with the view matrix)
+    private final Rectanglef cameraBounds = new Rectanglef();
+    private final Rectanglef screenBounds = new Rectanglef();
+
+    // Scratch storage for the world space corners of the rectangle currently being drawn
+    private final float[] quad = new float[8];
+
     private final GLShaderProgram program;
     private final GLVertexArray vao;
     private final GLVertexBuffer vbo;
+    private final GLVertexBuffer ibo;
+
+    private final boolean compact;
+    private final int vertexSize;
 
-    private FloatBuffer vertices;
+    private ByteBuffer vertices;
     private int verticesCount;
 
     private Camera camera;
     private int drawMode;
     private boolean isDrawing;
 
+    private boolean culling;
+    private int submitted;
+    private int culled;
+
     public ShapeBatch()
     {
-        this.vertices = BufferUtils.createFloatBuffer(65536);
+        this(false);
+    }
+
+    /**
+     * Creates a new ShapeBatch
+     *
+     * @param compact true to use the compact 12 byte vertex format (packed color), false to use the default 24 byte
+     *                vertex format
+     */
+    public ShapeBatch(boolean compact)
+    {
+        this.compact = compact;
+        this.vertexSize = compact ? COMPACT_VERTEX_SIZE : VERTEX_SIZE;
+        this.vertices = BufferUtils.createByteBuffer(BUFFER_SIZE);
         this.verticesCount = 0;
         this.drawMode = DRAW_MODE_FILLED;
         this.isDrawing = false;
         this.camera = null;
+        this.culling = true;
+        this.submitted = 0;
+        this.culled = 0;
 
         this.program = new GLShaderProgram();
         this.program.attachShaders(vertexShader, fragmentShader);
@@ -80,29 +124,86 @@ public class ShapeBatch
         this.vao.bind();
             this.vbo = new GLVertexBuffer();
             this.vbo.bind();
-            this.vbo.uploadBufferData(this.vertices.capacity() * Float.BYTES, GL_DYNAMIC_DRAW);
+            this.vbo.createStreamingStorage(this.vertices.capacity() + this.vertexSize);
 
             // Position attribute
-            this.vao.setVertexAttributePointer(0, 2, GL_FLOAT, 6 * Float.BYTES, 0);
+            this.vao.setVertexAttributePointer(0, 2, GL_FLOAT, this.vertexSize, 0);
             this.vao.enableVertexAttribute(0);
 
             // Color attribute
-            this.vao.setVertexAttributePointer(1, 4, GL_FLOAT, 6 * Float.BYTES, 2 * Float.BYTES);
+            if(compact)
+                this.vao.setVertexAttributePointer(1, 4, GL_UNSIGNED_BYTE, true, this.vertexSize, 2 * Float.BYTES);
+            else
+                this.vao.setVertexAttributePointer(1, 4, GL_FLOAT, this.vertexSize, 2 * Float.BYTES);
             this.vao.enableVertexAttribute(1);
+
+            // Quad indices used in filled mode (4 vertices per quad)
+            this.ibo = GLVertexBuffer.createQuadIndexBuffer(this.vertices.capacity() / (4 * this.vertexSize));
         this.vao.unbind();
         this.vbo.unbind();
+        this.ibo.unbind();
     }
 
     public void dispose()
     {
+        this.ibo.destroy();
         this.vbo.destroy();
         this.vao.destroy();
         this.program.destroy();
     }
 
+    /**
+     * Method to set the camera used by the ShapeBatch. Changing the camera while drawing flushes the shapes drawn with
+     * the previous camera and uploads the new view matrix.
+     *
+     * @param camera the camera to use, or null for no camera
+     */
     public void setCamera(Camera camera)
     {
         this.camera = camera;
+        if(this.isDrawing)
+        {
+            if(this.verticesCount > 0)
+                this.flush();
+            this.updateView();
+        }
+    }
+
+    public boolean isCompact()
+    {
+        return this.compact;
+    }
+
+    /**
+     * Method to enable or disable culling. When enabled, quads that are entirely outside of the visible area are
+     * rejected before any vertex data is written for them. Enabled by default.
+     *
+     * @param culling true to enable culling, false to disable it
+     */
+    public void setCullingEnabled(boolean culling)
+    {
+        this.culling = culling;
+    }
+
+    public boolean isCullingEnabled()
+    {
+        return this.culling;
+    }
+
+    /**
+     * Method to get the number of quads submitted since the beginning of the current (or last) frame
+     */
+    public int getSubmittedCount()
+    {
+        return this.submitted;
+    }
+
+    /**
+     * Method to get the number of submitted quads that were culled since the beginning of the current (or last) frame
+     */
+    public int getCulledCount()
+    {
+        return this.culled;
     }
 
     public void begin()
@@ -121,23 +222,24 @@ public class ShapeBatch
             // Reset matrices
             this.projection.identity();
             this.projection.ortho2D(0.0f, Display.getViewportWidth(), Display.getViewportHeight(), 0.0f);
-            this.view.identity();
-            if(this.camera != null)
-                this.view.set(this.camera.getViewMatrix());
 
             // Bind Shader Program & set global uniforms
             this.program.bind();
+            this.program.setUniformMatrix4fv("projection", this.projection);
+            this.updateView();
 
             // Set the OpenGL state
-            glEnable(GL_BLEND);
-            glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+            GLState.enable(GL_BLEND);
+            GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
             if(Display.getAntialiasMode().isMultisampled())
-                glEnable(GL_MULTISAMPLE);
+                GLState.enable(GL_MULTISAMPLE);
 
             this.isDrawing = true;
             this.drawMode = mode;
             this.vertices.clear();
             this.verticesCount = 0;
+            this.submitted = 0;
+            this.culled = 0;
         }
     }
 
@@ -151,12 +253,8 @@ public class ShapeBatch
             if(this.verticesCount > 0)
                 this.flush();
 
-            // Reset OpenGL state
-            glDisable(GL_BLEND);
-            if(Display.getAntialiasMode().isMultisampled())
-                glDisable(GL_MULTISAMPLE);
-
-            // Unbind program
+            // Unbind vertex array & program
+            this.vao.unbind();
             this.program.unbind();
 
             // Reset renderer state
@@ -175,10 +273,16 @@ public class ShapeBatch
         // Draw
         this.vao.bind();
         this.vbo.bind();
-        this.vbo.uploadBufferSubData(this.vertices, 0);
-        glDrawArrays(this.drawMode, 0, this.verticesCount);
-        this.vao.unbind();
-        this.vbo.unbind();
+        int offset = this.vbo.streamBufferData(this.vertices, this.vertexSize);
+
+        // Skip the draw if the vertices couldn't be streamed, the buffer only holds stale vertices
+        if(offset >= 0)
+        {
+            if(this.drawMode == DRAW_MODE_FILLED)
+                glDrawElementsBaseVertex(GL_TRIANGLES, this.verticesCount / 4 * 6, GL_UNSIGNED_INT, 0, offset / this.vertexSize);
+            else
+                glDrawArrays(this.drawMode, offset / this.vertexSize, this.verticesCount);
+        }
 
         // Reset vertices
         this.vertices.clear();
@@ -189,7 +293,7 @@ public class ShapeBatch
 
     public void drawPoint(float x, float y, Color c)
     {
-        if(this.vertices.remaining() < 32)
+        if(this.vertices.remaining() < this.vertexSize)
             this.flush();
     }
 
@@ -222,7 +326,7 @@ public class ShapeBatch
 
     public void drawLine(float x1, float y1, float x2, float y2, float rotation, float width, Color c1, Color c2)
     {
-        if(this.vertices.remaining() < 16)
+        if(this.vertices.remaining() < 2 * this.vertexSize)
             this.flush();
 
         if(this.drawMode == DRAW_MODE_FILLED)
@@ -236,9 +340,6 @@ public class ShapeBatch
             float midY = ((y1 + ty) + (y2 - ty)) / 2.0f;
 
             Matrix4f model = new Matrix4f();
-
-
-            Matrix4f mvp = new Matrix4f(this.projection).mul(this.view).mul(model);
         }
         else
         {
@@ -248,10 +349,8 @@ public class ShapeBatch
             model.rotateZ((float) Math.toRadians(rotation));
             model.translate(new Vector3f(-((x1 + x2) / 2.0f), -((y1 + y2) / 2.0f), 0.0f));
 
-            Matrix4f mvp = new Matrix4f(this.projection).mul(this.view).mul(model);
-
-            Vector4f v1 = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f).mul(mvp);
-            Vector4f v2 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).mul(mvp);
+            Vector4f v1 = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f).mul(model);
+            Vector4f v2 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).mul(model);
         }
     }
 
@@ -269,44 +368,85 @@ public class ShapeBatch
 
     public void drawRectangle(float x, float y, float w, float h, float rot, float scale, Color c1, Color c2, Color c3, Color c4)
     {
-        if(this.vertices.remaining() < 32)
-            this.flush();
-
-        Matrix4f model = new Matrix4f();
-        model.translate(new Vector3f(x, y, 0.0f));
-        model.translate(new Vector3f(0.5f * w, 0.5f * h, 0.0f));
-        model.rotateZ((float) Math.toRadians(rot));
-        model.translate(new Vector3f(-0.5f * w, -0.5f * h, 0.0f));
-        model.scale(new Vector3f(scale * w, scale * h, 1.0f));
+        this.submitted++;
+        if(this.culling && !QuadTransform.intersects(this.cameraBounds, x, y, w, h, rot, scale))
+        {
+            this.culled++;
+            return;
+        }
 
-        Matrix4f mvp = new Matrix4f(this.projection).mul(this.view).mul(model);
+        if(this.vertices.remaining() < 8 * this.vertexSize)
+            this.flush();
 
-        Vector4f v1 = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f).mul(mvp);
-        Vector4f v2 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).mul(mvp);
-        Vector4f v3 = new Vector4f(1.0f, 1.0f, 0.0f, 1.0f).mul(mvp);
-        Vector4f v4 = new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).mul(mvp);
+        // Transform the rectangle corners into world space (projection & view are applied in the vertex shader)
+        QuadTransform.transform(this.quad, x, y, w, h, rot, scale);
+        float[] q = this.quad;
 
         if(this.drawMode == DRAW_MODE_LINES)
         {
-            this.vertices.put(v1.x).put(v1.y).put(c1.r()).put(c1.g()).put(c1.b()).put(c1.a());
-            this.vertices.put(v2.x).put(v2.y).put(c2.r()).put(c2.g()).put(c2.b()).put(c2.a());
-            this.vertices.put(v2.x).put(v2.y).put(c2.r()).put(c2.g()).put(c2.b()).put(c2.a());
-            this.vertices.put(v3.x).put(v3.y).put(c3.r()).put(c3.g()).put(c3.b()).put(c3.a());
-            this.vertices.put(v3.x).put(v3.y).put(c3.r()).put(c3.g()).put(c3.b()).put(c3.a());
-            this.vertices.put(v4.x).put(v4.y).put(c4.r()).put(c4.g()).put(c4.b()).put(c4.a());
-            this.vertices.put(v4.x).put(v4.y).put(c4.r()).put(c4.g()).put(c4.b()).put(c4.a());
-            this.vertices.put(v1.x).put(v1.y).put(c1.r()).put(c1.g()).put(c1.b()).put(c1.a());
+            this.putVertex(q[0], q[1], c1);
+            this.putVertex(q[2], q[3], c2);
+            this.putVertex(q[2], q[3], c2);
+            this.putVertex(q[4], q[5], c3);
+            this.putVertex(q[4], q[5], c3);
+            this.putVertex(q[6], q[7], c4);
+            this.putVertex(q[6], q[7], c4);
+            this.putVertex(q[0], q[1], c1);
             this.verticesCount += 8;
         }
         else
         {
-            this.vertices.put(v1.x).put(v1.y).put(c1.r()).put(c1.g()).put(c1.b()).put(c1.a());
-            this.vertices.put(v2.x).put(v2.y).put(c2.r()).put(c2.g()).put(c2.b()).put(c2.a());
-            this.vertices.put(v3.x).put(v3.y).put(c3.r()).put(c3.g()).put(c3.b()).put(c3.a());
-            this.vertices.put(v3.x).put(v3.y).put(c3.r()).put(c3.g()).put(c3.b()).put(c3.a());
-            this.vertices.put(v4.x).put(v4.y).put(c4.r()).put(c4.g()).put(c4.b()).put(c4.a());
-            this.vertices.put(v1.x).put(v1.y).put(c1.r()).put(c1.g()).put(c1.b()).put(c1.a());
-            this.verticesCount += 6;
+            // Filled shapes are drawn as indexed quads
+            this.putVertex(q[0], q[1], c1);
+            this.putVertex(q[2], q[3], c2);
+            this.putVertex(q[4], q[5], c3);
+            this.putVertex(q[6], q[7], c4);
+            this.verticesCount += 4;
+        }
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    /**
+     * Method for uploading the view matrix of the current camera (or the identity matrix if there is no camera) to the
+     * shader program and updating the culling bounds. The shader program must be bound.
+     */
+    private void updateView()
+    {
+        this.view.identity();
+        if(this.camera != null)
+            this.view.set(this.camera.getViewMatrix());
+        this.program.setUniformMatrix4fv("view", this.view);
+
+        // Update the culling bounds to match
+        this.screenBounds.minX = 0.0f;
+        this.screenBounds.minY = 0.0f;
+        this.screenBounds.maxX = Display.getViewportWidth();
+        this.screenBounds.maxY = Display.getViewportHeight();
+        if(this.camera != null)
+            this.camera.getVisibleBounds(this.screenBounds.maxX, this.screenBounds.maxY, this.cameraBounds);
+        else
+        {
+            this.cameraBounds.minX = this.screenBounds.minX;
+            this.cameraBounds.minY = this.screenBounds.minY;
+            this.cameraBounds.maxX = this.screenBounds.maxX;
+            this.cameraBounds.maxY = this.screenBounds.maxY;
         }
     }
+
+    /**
+     * Method for writing a single vertex to the vertex buffer in the format used by this ShapeBatch
+     *
+     * @param x x-position of the vertex
+     * @param y y-position of the vertex
+     * @param c color of the vertex
+     */
+    private void putVertex(float x, float y, Color c)
+    {
+        this.vertices.putFloat(x).putFloat(y);
+        if(this.compact)
+            this.vertices.putInt(c.toNativeRGBA8888());
+        else
+            this.vertices.putFloat(c.r()).putFloat(c.g()).putFloat(c.b()).putFloat(c.a());
+    }
 }
@@ -0,0 +1,23 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+/**
+ * Sort modes for SpriteBatch.begin. In any mode other than Immediate, draw calls are recorded instead of being written
+ * to the vertex buffer straight away, and are sorted and drawn when the SpriteBatch is ended. Layers are always drawn
+ * in ascending order.
+ */
+public enum SortMode
+{
+    /** Draw calls are drawn in the order they are made (default) */
+    Immediate,
+
+    /** Draw calls are sorted by layer, then texture, then depth, minimizing texture switches within each layer */
+    Texture,
+
+    /** Draw calls are sorted by layer, then depth, then texture, keeping depth ordering within each layer */
+    Depth;
+
+    public boolean isDeferred()
+    {
+        return !this.equals(Immediate);
+    }
+}
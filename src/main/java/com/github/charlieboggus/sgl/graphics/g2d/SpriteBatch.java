@@ -2,57 +2,157 @@ package com.github.charlieboggus.sgl.graphics.g2d;
 
 import com.github.charlieboggus.sgl.core.Display;
 import com.github.charlieboggus.sgl.graphics.gl.GLShaderProgram;
+import com.github.charlieboggus.sgl.graphics.gl.GLState;
 import com.github.charlieboggus.sgl.graphics.gl.GLVertexArray;
 import com.github.charlieboggus.sgl.graphics.gl.GLVertexBuffer;
 import com.github.charlieboggus.sgl.utility.Color;
 import com.github.charlieboggus.sgl.utility.Logger;
 
 import org.joml.Matrix4f;
-import org.joml.Vector3f;
-import org.joml.Vector4f;
+import org.joml.Rectanglef;
 import org.lwjgl.BufferUtils;
 
-import java.nio.FloatBuffer;
+import java.nio.ByteBuffer;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
-import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
+import static org.lwjgl.opengl.GL20.GL_MAX_TEXTURE_IMAGE_UNITS;
 
 public class SpriteBatch
 {
     private static final Logger logger = Logger.getLogger(SpriteBatch.class);
 
+    // Default vertex: position (2 floats), color (4 floats), texture coordinates (2 floats), texture slot & flags
+    // (1 float) = 36 bytes
+    private static final int VERTEX_SIZE = 9 * Float.BYTES;
+
+    // Compact vertex: position (2 floats), color (4 normalized ubytes), texture coordinates (2 normalized ushorts),
+    // texture slot & flags (1 ubyte + 3 bytes padding) = 20 bytes
+    private static final int COMPACT_VERTEX_SIZE = 2 * Float.BYTES + 4 + 2 * Short.BYTES + 4;
+
+    // Maximum number of textures that can be bound per batch (must match the size of the images array in renderer.fs)
+    static final int MAX_TEXTURE_SLOTS = 16;
+
+    // Set in a vertex's slot attribute when the vertex should not be transformed by the camera (view) matrix
+    static final int NO_CAMERA_FLAG = 16;
+
     private final Matrix4f projection = new Matrix4f();
     private final Matrix4f view = new Matrix4f();
 
+    // Visible areas used to cull quads drawn with and without the camera (updated with the view matrix)
+    private final Rectanglef cameraBounds = new Rectanglef();
+    private final Rectanglef screenBounds = new Rectanglef();
+
+    // Scratch storage for the world space corners of the quad currently being drawn (x/y pairs, in the order bottom
+    // left, bottom right, top right, top left) so the draw methods don't have to allocate any JOML objects
+    private final float[] quad = new float[8];
+
     private final GLShaderProgram program;
-    private final GLVertexArray vao;
-    private final GLVertexBuffer vbo;
+    private final GLVertexBuffer ibo;
+
+    // Vertex buffers (each with its own vertex array) cycled through on every flush. A single buffer uses streaming
+    // storage, multiple buffers are orphaned & re-filled in turn.
+    private final GLVertexArray[] vaos;
+    private final GLVertexBuffer[] vbos;
+    private int currentBuffer;
 
-    private FloatBuffer vertices;
+    private final boolean compact;
+    private final int vertexSize;
+
+    private ByteBuffer vertices;
     private int verticesCount;
 
-    private Texture image0;
+    // Textures bound for the current batch, indexed by texture unit
+    private final Texture[] textures;
+    private final int[] textureUnits;
+    private int texturesCount;
+
+    // Draw commands recorded while drawing with a deferred sort mode
+    private final DrawCommandBuffer commands;
+    private SortMode sortMode;
+    private int layer;
+    private float depth;
+
     private Camera camera;
     private TrueTypeFont defaultFont;
 
+    // Render texture drawn into between begin & end (null when drawing to the display)
+    private RenderTexture target;
+
     private boolean isDrawing;
     private int calls;
     private int totalCalls;
+    private long uploadedBytes;
+
+    private boolean culling;
+    private int submitted;
+    private int culled;
 
     public SpriteBatch()
     {
+        this(false);
+    }
+
+    public SpriteBatch(boolean compact)
+    {
+        this(compact, Display.getBatchSize(), Display.getBatchBufferCount());
+    }
+
+    /**
+     * Creates a new SpriteBatch
+     *
+     * @param compact true to use the compact 20 byte vertex format (packed color and texture coordinates), false to
+     *                use the default 36 byte vertex format
+     * @param batchSize the maximum number of quads drawn per flush
+     * @param bufferCount the number of vertex buffers to cycle through. 1 uses a single streaming buffer, more than 1
+     *                    allocates that many buffers up front and fills the next one in place on every flush (without
+     *                    orphaning it), so the driver only has to wait on a buffer the GPU is still reading from if
+     *                    more than bufferCount flushes are in flight
+     */
+    public SpriteBatch(boolean compact, int batchSize, int bufferCount)
+    {
+        if(batchSize < 1)
+        {
+            logger.warning("Invalid batch size: " + batchSize + "! Using 1 instead.");
+            batchSize = 1;
+        }
+        if(bufferCount < 1)
+        {
+            logger.warning("Invalid batch buffer count: " + bufferCount + "! Using 1 instead.");
+            bufferCount = 1;
+        }
+
         // Initialize Renderer state
-        this.vertices = BufferUtils.createFloatBuffer(65536);
+        this.compact = compact;
+        this.vertexSize = compact ? COMPACT_VERTEX_SIZE : VERTEX_SIZE;
+        this.vertices = BufferUtils.createByteBuffer(batchSize * 4 * this.vertexSize);
         this.verticesCount = 0;
 
-        this.image0 = null;
+        this.textures = new Texture[Math.min(MAX_TEXTURE_SLOTS, glGetInteger(GL_MAX_TEXTURE_IMAGE_UNITS))];
+        this.textureUnits = new int[MAX_TEXTURE_SLOTS];
+        for(int i = 0; i < MAX_TEXTURE_SLOTS; i++)
+            this.textureUnits[i] = i;
+        this.texturesCount = 0;
+
+        this.commands = new DrawCommandBuffer();
+        this.sortMode = SortMode.Immediate;
+        this.layer = 0;
+        this.depth = 0.0f;
+
         this.camera = null;
+        this.target = null;
         this.defaultFont = new TrueTypeFont();
 
         this.isDrawing = false;
         this.calls = 0;
         this.totalCalls = 0;
+        this.uploadedBytes = 0;
+
+        this.culling = true;
+        this.submitted = 0;
+        this.culled = 0;
 
         // Create the Shader Program
         this.program = new GLShaderProgram();
@@ -60,39 +160,63 @@ public class SpriteBatch
         this.program.link();
         this.program.validate();
 
-        // Create the Vertex Array & Buffers
-        this.vao = new GLVertexArray();
-        this.vao.bind();
-            this.vbo = new GLVertexBuffer();
-            this.vbo.bind();
-            this.vbo.uploadBufferData(this.vertices.capacity() * Float.BYTES, GL_DYNAMIC_DRAW);
-
-            // Position Attribute
-            this.vao.setVertexAttributePointer(0, 2, GL_FLOAT, 8 * Float.BYTES, 0);
-            this.vao.enableVertexAttribute(0);
-
-            // Color Attribute
-            this.vao.setVertexAttributePointer(1, 4, GL_FLOAT, 8 * Float.BYTES, 2 * Float.BYTES);
-            this.vao.enableVertexAttribute(1);
-
-            // Texture Coordinates Attribute
-            this.vao.setVertexAttributePointer(2, 2, GL_FLOAT, 8 * Float.BYTES, 6 * Float.BYTES);
-            this.vao.enableVertexAttribute(2);
-        this.vao.unbind();
-        this.vbo.unbind();
+        // Create the Vertex Arrays & Buffers
+        this.vaos = new GLVertexArray[bufferCount];
+        this.vbos = new GLVertexBuffer[bufferCount];
+        this.currentBuffer = 0;
+        GLVertexBuffer indices = null;
+        for(int i = 0; i < bufferCount; i++)
+        {
+            this.vaos[i] = new GLVertexArray();
+            this.vaos[i].bind();
+                this.vbos[i] = new GLVertexBuffer();
+                this.vbos[i].bind();
+                if(bufferCount == 1)
+                    this.vbos[i].createStreamingStorage(this.vertices.capacity() + this.vertexSize);
+                else
+                    this.vbos[i].uploadBufferData(this.vertices.capacity(), GL_STREAM_DRAW);
+                this.setVertexAttributes(this.vaos[i]);
+
+                // Quad Indices (4 vertices per quad, shared by every vertex array)
+                if(indices == null)
+                    indices = GLVertexBuffer.createQuadIndexBuffer(batchSize);
+                else
+                    indices.bind();
+            this.vaos[i].unbind();
+            this.vbos[i].unbind();
+        }
+        this.ibo = indices;
+        this.ibo.unbind();
     }
 
     public void dispose()
     {
-        this.vbo.destroy();
-        this.vao.destroy();
+        this.ibo.destroy();
+        for(int i = 0; i < this.vbos.length; i++)
+        {
+            this.vbos[i].destroy();
+            this.vaos[i].destroy();
+        }
         this.program.destroy();
         this.defaultFont.dispose();
     }
 
+    /**
+     * Method to set the camera used by draw calls with useCamera set. The camera's view matrix is uploaded as a uniform
+     * at the start of each batch, so changing the camera while drawing only flushes the vertices that were drawn with
+     * the previous camera and uploads the new view matrix.
+     *
+     * @param camera the camera to use, or null for no camera
+     */
     public void setCamera(Camera camera)
     {
         this.camera = camera;
+        if(this.isDrawing)
+        {
+            this.drawCommands();
+            this.flush();
+            this.updateView();
+        }
     }
 
     public int getRenderCalls()
@@ -105,36 +229,164 @@ public class SpriteBatch
         return this.totalCalls;
     }
 
+    /**
+     * Method to get the number of vertex bytes uploaded to the GPU since the beginning of the current (or last) frame
+     *
+     * @return the number of vertex bytes uploaded
+     */
+    public long getUploadedBytes()
+    {
+        return this.uploadedBytes;
+    }
+
+    public boolean isCompact()
+    {
+        return this.compact;
+    }
+
+    /**
+     * Method to enable or disable culling. When enabled, quads that are entirely outside of the visible area are
+     * rejected before any vertex data is written for them. Enabled by default.
+     *
+     * @param culling true to enable culling, false to disable it
+     */
+    public void setCullingEnabled(boolean culling)
+    {
+        this.culling = culling;
+    }
+
+    public boolean isCullingEnabled()
+    {
+        return this.culling;
+    }
+
+    /**
+     * Method to get the number of quads submitted since the beginning of the current (or last) frame
+     */
+    public int getSubmittedCount()
+    {
+        return this.submitted;
+    }
+
+    /**
+     * Method to get the number of submitted quads that were culled since the beginning of the current (or last) frame
+     */
+    public int getCulledCount()
+    {
+        return this.culled;
+    }
+
+    public SortMode getSortMode()
+    {
+        return this.sortMode;
+    }
+
+    /**
+     * Method to set the layer of subsequent draw calls. Only used by deferred sort modes, where lower layers are always
+     * drawn before higher layers. Reset to 0 by begin.
+     *
+     * @param layer the layer (between Short.MIN_VALUE and Short.MAX_VALUE)
+     */
+    public void setLayer(int layer)
+    {
+        this.layer = layer;
+    }
+
+    public int getLayer()
+    {
+        return this.layer;
+    }
+
+    /**
+     * Method to set the depth of subsequent draw calls within their layer. Only used by deferred sort modes, where
+     * lower depths are drawn first (i.e. further back). Reset to 0 by begin.
+     *
+     * @param depth the depth (between 0 and 1)
+     */
+    public void setDepth(float depth)
+    {
+        this.depth = depth;
+    }
+
+    public float getDepth()
+    {
+        return this.depth;
+    }
+
     public void begin()
+    {
+        this.begin(SortMode.Immediate);
+    }
+
+    /**
+     * Method to begin drawing with the given sort mode. With SortMode.Immediate quads are written to the vertex buffer
+     * as they are drawn. With the deferred sort modes draw calls are recorded and only sorted and drawn by end (or when
+     * the camera changes), so textures drawn interleaved end up in as few batches as possible.
+     *
+     * @param sortMode the sort mode to use until end is called
+     */
+    public void begin(SortMode sortMode)
+    {
+        this.begin(null, sortMode);
+    }
+
+    public void begin(RenderTexture target)
+    {
+        this.begin(target, SortMode.Immediate);
+    }
+
+    /**
+     * Method to begin drawing into a render texture instead of the display. The render texture is used as the target
+     * until end is called.
+     *
+     * @param target the render texture to draw into (null to draw to the display)
+     * @param sortMode the sort mode to use until end is called
+     */
+    public void begin(RenderTexture target, SortMode sortMode)
     {
         if(this.isDrawing)
             logger.error("SpriteBatch is already drawing!");
         else
         {
-            // Reset the projection and view matrices at the beginning of each render cycle
+            // Redirect rendering to the render texture if there is one
+            this.target = target;
+            if(target != null)
+                target.beginTarget();
+
+            // Reset the projection and view matrices at the beginning of each render cycle. Render textures are drawn
+            // into upside down so their contents end up top row first, like loaded textures.
             this.projection.identity();
-            this.projection.ortho2D(0.0f, Display.getViewportWidth(), Display.getViewportHeight(), 0.0f);
-            this.view.identity();
-            if(this.camera != null)
-                this.view.set(this.camera.getViewMatrix());
+            if(target != null)
+                this.projection.ortho2D(0.0f, target.getWidth(), 0.0f, target.getHeight());
+            else
+                this.projection.ortho2D(0.0f, Display.getViewportWidth(), Display.getViewportHeight(), 0.0f);
 
             // Bind the shader program & set global uniforms
             this.program.bind();
-            this.program.setUniform1i("image0", 0);
+            this.program.setUniform1iv("images", this.textureUnits);
+            this.program.setUniformMatrix4fv("projection", this.projection);
+            this.updateView();
             // TODO: global uniforms (like FXAA and stuff)
 
             // Set the OpenGL state
-            glEnable(GL_BLEND);
-            glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+            GLState.enable(GL_BLEND);
+            GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
             if(Display.getAntialiasMode().isMultisampled())
-                glEnable(GL_MULTISAMPLE);
+                GLState.enable(GL_MULTISAMPLE);
 
             // Set the renderer state
             this.vertices.clear();
             this.verticesCount = 0;
-            this.image0 = null;
+            this.texturesCount = 0;
+            this.commands.clear();
+            this.sortMode = sortMode;
+            this.layer = 0;
+            this.depth = 0.0f;
             this.isDrawing = true;
             this.calls = 0;
+            this.uploadedBytes = 0;
+            this.submitted = 0;
+            this.culled = 0;
         }
     }
 
@@ -144,22 +396,24 @@ public class SpriteBatch
             logger.error("SpriteBatch is not currently drawing!");
         else
         {
-            // Flush the renderer if  there are still vertices remaining
+            // Draw any recorded commands, then flush the renderer if there are still vertices remaining
+            this.drawCommands();
             if(this.verticesCount > 0)
                 this.flush();
 
-            // Reset the OpenGL state
-            glDisable(GL_BLEND);
-            if(Display.getAntialiasMode().isMultisampled())
-                glDisable(GL_MULTISAMPLE);
-
-            // Unbind Shader Program
+            // Unbind the vertex array & Shader Program (textures stay bound so the next batch can skip rebinding them)
+            this.vaos[0].unbind();
             this.program.unbind();
 
+            // Switch back to drawing to the display
+            if(this.target != null)
+                this.target.endTarget();
+            this.target = null;
+
             // Reset the Renderer state
             this.vertices.clear();
             this.verticesCount = 0;
-            this.image0 = null;
+            this.texturesCount = 0;
             this.isDrawing = false;
             this.calls = 0;
         }
@@ -167,32 +421,50 @@ public class SpriteBatch
 
     private void flush()
     {
-        // Flip the vertices buffer if there are vertices stored in it to allow reading from it
+        // Only draw if there are vertices stored in the buffer (i.e. a batch of empty strings)
         if(this.verticesCount > 0)
+        {
+            // Flip the vertices buffer to allow reading from it
             this.vertices.flip();
 
-        // Draw
-        // TODO: figure out multiple texture units
-        this.image0.bind();
-        this.vao.bind();
-        this.vbo.bind();
-        this.vbo.uploadBufferSubData(this.vertices, 0);
-
-        glDrawArrays(GL_TRIANGLES, 0, this.verticesCount);
+            // Bind each texture used by the batch to its texture unit
+            for(int i = 0; i < this.texturesCount; i++)
+                this.textures[i].bind(i);
+
+            // Draw
+            GLVertexArray vao = this.vaos[this.currentBuffer];
+            GLVertexBuffer vbo = this.vbos[this.currentBuffer];
+            vao.bind();
+            vbo.bind();
+            this.uploadedBytes += this.vertices.remaining();
+            int offset = 0;
+            if(vbo.isStreaming())
+                offset = vbo.streamBufferData(this.vertices, this.vertexSize);
+            else
+            {
+                // Fill the next buffer of the cycle in place, the GPU is done with it unless a frame flushes more times
+                // than there are buffers
+                vbo.uploadBufferSubData(this.vertices, 0);
+            }
 
-        this.vao.unbind();
-        this.vbo.unbind();
-        // TODO: Figure out multiple texture units
-        this.image0.unbind();
+            // Skip the draw if the vertices couldn't be streamed, the buffer only holds stale vertices
+            if(offset >= 0)
+            {
+                glDrawElementsBaseVertex(GL_TRIANGLES, this.verticesCount / 4 * 6, GL_UNSIGNED_INT, 0, offset / this.vertexSize);
 
-        // Increment render call counters
-        this.calls++;
-        this.totalCalls++;
+                // Increment render call counters
+                this.calls++;
+                this.totalCalls++;
+            }
+            this.currentBuffer = (this.currentBuffer + 1) % this.vbos.length;
+        }
 
         // Reset the drawing state
         this.vertices.clear();
         this.verticesCount = 0;
-        this.image0 = null;
+        for(int i = 0; i < this.texturesCount; i++)
+            this.textures[i] = null;
+        this.texturesCount = 0;
     }
 
     // Single Texture Draw Methods -------------------------------------------------------------------------------------
@@ -265,33 +537,7 @@ public class SpriteBatch
      */
     public void drawTexture(Texture texture, float x, float y, float rotation, float scale, Color col, boolean useCamera)
     {
-        this.updateCurrentTexture(texture);
-
-        // Create model transformation matrix
-        Matrix4f model = new Matrix4f();
-        model.translate(new Vector3f(x, y, 0.0f));
-        model.translate(new Vector3f(0.5f * texture.getWidth(), 0.5f * texture.getHeight(), 0.0f));
-        model.rotateZ((float) Math.toRadians(rotation));
-        model.translate(new Vector3f(-0.5f * texture.getWidth(), -0.5f * texture.getHeight(), 0.0f));
-        model.scale(new Vector3f(scale * texture.getWidth(), scale * texture.getHeight(), 1.0f));
-
-        // Get MVP transformation matrix
-        Matrix4f mvp = new Matrix4f(this.projection).mul(useCamera ? this.view : new Matrix4f()).mul(model);
-
-        // Multiply each vertex by the MVP matrix
-        Vector4f v1 = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f).mul(mvp);    // Bottom Left
-        Vector4f v2 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).mul(mvp);    // Bottom Right
-        Vector4f v3 = new Vector4f(1.0f, 1.0f, 0.0f, 1.0f).mul(mvp);    // Top Right
-        Vector4f v4 = new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).mul(mvp);    // Top Left
-
-        // Upload transformed vertices to vertex buffer
-        this.vertices.put(v4.x).put(v4.y).put(col.r()).put(col.g()).put(col.b()).put(col.a()).put(texture.getS0()).put(texture.getT1());
-        this.vertices.put(v2.x).put(v2.y).put(col.r()).put(col.g()).put(col.b()).put(col.a()).put(texture.getS1()).put(texture.getT0());
-        this.vertices.put(v1.x).put(v1.y).put(col.r()).put(col.g()).put(col.b()).put(col.a()).put(texture.getS0()).put(texture.getT0());
-        this.vertices.put(v4.x).put(v4.y).put(col.r()).put(col.g()).put(col.b()).put(col.a()).put(texture.getS0()).put(texture.getT1());
-        this.vertices.put(v3.x).put(v3.y).put(col.r()).put(col.g()).put(col.b()).put(col.a()).put(texture.getS1()).put(texture.getT1());
-        this.vertices.put(v2.x).put(v2.y).put(col.r()).put(col.g()).put(col.b()).put(col.a()).put(texture.getS1()).put(texture.getT0());
-        this.verticesCount += 6;
+        this.submitQuad(texture, x, y, texture.getWidth(), texture.getHeight(), rotation, scale, texture.getS0(), texture.getT0(), texture.getS1(), texture.getT1(), col, useCamera);
     }
 
     // Text rendering methods ------------------------------------------------------------------------------------------
@@ -425,8 +671,7 @@ public class SpriteBatch
      */
     public void drawText(TrueTypeFont font, String text, float x, float y, float rotation, float scale, Color c, boolean useCamera)
     {
-        // Check if we need to update the current texture
-        this.updateCurrentTexture(font.getFontTexture());
+        Texture fontTexture = font.getFontTexture();
 
         int textHeight = font.getTextHeight(text);
         float drawX = x;
@@ -450,43 +695,74 @@ public class SpriteBatch
 
             TrueTypeFont.Glyph g = font.getGlyph(ch);
 
-            // Create model transformation matrix for current character
-            Matrix4f model = new Matrix4f();
-            model.translate(new Vector3f(drawX, drawY, 0.0f));
-            model.translate(new Vector3f(0.5f * g.w, 0.5f * g.h, 0.0f));
-            model.rotateZ((float) Math.toRadians(rotation));
-            model.translate(new Vector3f(-0.5f * g.w, -0.5f * g.h, 0.0f));
-            model.scale(new Vector3f(scale * g.w, scale * g.h, 1.0f));
-
-            // Get MVP transformation matrix
-            Matrix4f mvp = new Matrix4f(this.projection).mul(useCamera ? this.view : new Matrix4f()).mul(model);
-
-            // Multiply each quad vertex by the MVP transformation matrix
-            Vector4f v1 = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f).mul(mvp);    // Bottom Left
-            Vector4f v2 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).mul(mvp);    // Bottom Right
-            Vector4f v3 = new Vector4f(1.0f, 1.0f, 0.0f, 1.0f).mul(mvp);    // Top Right
-            Vector4f v4 = new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).mul(mvp);    // Top Left
-
-            // Get texture coordinates for current glyph
-            float s0 = font.getGlyphS0(ch);
-            float t0 = font.getGlyphT0(ch);
-            float s1 = font.getGlyphS1(ch);
-            float t1 = font.getGlyphT1(ch);
-
-            // Upload transformed vertices to vertex buffer
-            this.vertices.put(v1.x).put(v1.y).put(c.r()).put(c.g()).put(c.b()).put(c.a()).put(s0).put(t0);  // Bottom Left
-            this.vertices.put(v2.x).put(v2.y).put(c.r()).put(c.g()).put(c.b()).put(c.a()).put(s1).put(t0);  // Bottom Right
-            this.vertices.put(v3.x).put(v3.y).put(c.r()).put(c.g()).put(c.b()).put(c.a()).put(s1).put(t1);  // Top Right
-            this.vertices.put(v1.x).put(v1.y).put(c.r()).put(c.g()).put(c.b()).put(c.a()).put(s0).put(t0);  // Bottom Left
-            this.vertices.put(v3.x).put(v3.y).put(c.r()).put(c.g()).put(c.b()).put(c.a()).put(s1).put(t1);  // Top Right
-            this.vertices.put(v4.x).put(v4.y).put(c.r()).put(c.g()).put(c.b()).put(c.a()).put(s0).put(t1);  // Top Left
-            this.verticesCount += 6;
+            // Draw the glyph quad using the texture coordinates of the current glyph
+            this.submitQuad(fontTexture, drawX, drawY, g.w, g.h, rotation, scale, font.getGlyphS0(g), font.getGlyphT0(g), font.getGlyphS1(g), font.getGlyphT1(g), c, useCamera);
 
             // Update the x position we're drawing characters at
             drawX += g.w;
         }
     }
 
+    // Draw List Methods -----------------------------------------------------------------------------------------------
+
+    /**
+     * Method for drawing the quads recorded in a DrawList. The vertices of the list have already been transformed, so
+     * they are copied into the vertex buffer in runs of quads sharing a texture and only have their texture slots
+     * filled in. Lists are drawn in the order this method is called, after any commands recorded by a deferred sort
+     * mode so far. Must be called on the render thread, and the list must not be modified until this method returns.
+     *
+     * @param list the draw list to draw
+     */
+    public void drawList(DrawList list)
+    {
+        if(!this.isDrawing)
+        {
+            logger.error("SpriteBatch is not currently drawing!");
+            return;
+        }
+        if(list.isCompact() != this.compact)
+        {
+            logger.error("DrawList vertex format does not match the SpriteBatch vertex format!");
+            return;
+        }
+
+        // Keep the submission order of anything recorded before the list
+        this.drawCommands();
+
+        int count = list.getQuadsCount();
+        int quadSize = 4 * this.vertexSize;
+        int slotOffset = this.compact ? 2 * Float.BYTES + 8 : 8 * Float.BYTES;
+        ByteBuffer src = list.getVertices().duplicate();
+        this.submitted += count;
+
+        int i = 0;
+        while(i < count)
+        {
+            // Find the run of quads sharing this texture that fits in the vertex buffer
+            Texture texture = list.getTexture(i);
+            int slot = this.updateCurrentTexture(texture);
+            int room = this.vertices.remaining() / quadSize;
+            int end = i + 1;
+            while(end < count && end - i < room && list.getTexture(end).getGLTexture() == texture.getGLTexture())
+                end++;
+
+            // Copy the run & set the texture slot of each vertex (the camera flag was set by the list)
+            int start = this.vertices.position();
+            src.limit(end * quadSize).position(i * quadSize);
+            this.vertices.put(src);
+            for(int v = start + slotOffset; v < this.vertices.position(); v += this.vertexSize)
+            {
+                if(this.compact)
+                    this.vertices.put(v, (byte) (this.vertices.get(v) | slot));
+                else
+                    this.vertices.putFloat(v, (int) this.vertices.getFloat(v) | slot);
+            }
+
+            this.verticesCount += (end - i) * 4;
+            i = end;
+        }
+    }
+
     // Blended texture draw methods ------------------------------------------------------------------------------------
 
     // TODO: figure this out
@@ -494,22 +770,226 @@ public class SpriteBatch
     // Utility Methods -------------------------------------------------------------------------------------------------
 
     /**
-     * Method for updating the currently bound texture. If a draw method has been called on a new texture we need to
-     * flush the SpriteBatch and unbind the old texture before uploading vertices for and binding the new texture.
+     * Method for setting the vertex attributes of the given vertex array for the vertex format used by this SpriteBatch.
+     * The vertex array & its vertex buffer must be bound.
+     */
+    private void setVertexAttributes(GLVertexArray vao)
+    {
+        // Position Attribute
+        vao.setVertexAttributePointer(0, 2, GL_FLOAT, this.vertexSize, 0);
+        vao.enableVertexAttribute(0);
+
+        if(this.compact)
+        {
+            // Color Attribute
+            vao.setVertexAttributePointer(1, 4, GL_UNSIGNED_BYTE, true, this.vertexSize, 2 * Float.BYTES);
+            vao.enableVertexAttribute(1);
+
+            // Texture Coordinates Attribute
+            vao.setVertexAttributePointer(2, 2, GL_UNSIGNED_SHORT, true, this.vertexSize, 2 * Float.BYTES + 4);
+            vao.enableVertexAttribute(2);
+
+            // Texture Slot Attribute
+            vao.setVertexAttributePointer(3, 1, GL_UNSIGNED_BYTE, this.vertexSize, 2 * Float.BYTES + 8);
+            vao.enableVertexAttribute(3);
+        }
+        else
+        {
+            // Color Attribute
+            vao.setVertexAttributePointer(1, 4, GL_FLOAT, this.vertexSize, 2 * Float.BYTES);
+            vao.enableVertexAttribute(1);
+
+            // Texture Coordinates Attribute
+            vao.setVertexAttributePointer(2, 2, GL_FLOAT, this.vertexSize, 6 * Float.BYTES);
+            vao.enableVertexAttribute(2);
+
+            // Texture Slot Attribute
+            vao.setVertexAttributePointer(3, 1, GL_FLOAT, this.vertexSize, 8 * Float.BYTES);
+            vao.enableVertexAttribute(3);
+        }
+    }
+
+    /**
+     * Method for submitting a single quad. Quads outside of the visible area are culled, otherwise depending on the
+     * sort mode the quad is either drawn straight away or recorded to be sorted and drawn later.
+     */
+    private void submitQuad(Texture texture, float x, float y, float w, float h, float rotation, float scale, float s0, float t0, float s1, float t1, Color c, boolean useCamera)
+    {
+        this.submitted++;
+        if(this.culling && !QuadTransform.intersects(useCamera ? this.cameraBounds : this.screenBounds, x, y, w, h, rotation, scale))
+        {
+            this.culled++;
+            return;
+        }
+
+        if(this.sortMode.isDeferred())
+            this.commands.add(this.sortMode, this.layer, this.depth, texture, c, useCamera, x, y, w, h, rotation, scale, s0, t0, s1, t1);
+        else
+            this.drawQuad(texture, x, y, w, h, rotation, scale, s0, t0, s1, t1, c.r(), c.g(), c.b(), c.a(), useCamera);
+    }
+
+    /**
+     * Method for writing the 4 vertices of a quad to the vertex buffer, flushing first if needed
      *
-     * @param texture the texture to check against the currently bound texture
+     * @param texture the texture the quad samples from
+     * @param x x-position of the quad (xpos of upper left corner)
+     * @param y y-position of the quad (ypos of upper left corner)
+     * @param w width of the quad
+     * @param h height of the quad
+     * @param rotation the angle of rotation of the quad around its center (in degrees)
+     * @param scale the scale of the quad
+     * @param s0 s texture coordinate of the left edge
+     * @param t0 t texture coordinate of the bottom edge
+     * @param s1 s texture coordinate of the right edge
+     * @param t1 t texture coordinate of the top edge
+     * @param r red component of the color to tint the quad
+     * @param g green component of the color to tint the quad
+     * @param b blue component of the color to tint the quad
+     * @param a alpha component of the color to tint the quad
+     * @param useCamera true to make the quad affected by the camera, false otherwise
+     */
+    private void drawQuad(Texture texture, float x, float y, float w, float h, float rotation, float scale, float s0, float t0, float s1, float t1, float r, float g, float b, float a, boolean useCamera)
+    {
+        int slot = this.updateCurrentTexture(texture);
+
+        // Transform the quad corners into world space (projection & view are applied in the vertex shader)
+        QuadTransform.transform(this.quad, x, y, w, h, rotation, scale);
+        float[] q = this.quad;
+        int flags = useCamera ? slot : slot | NO_CAMERA_FLAG;
+
+        // Upload transformed vertices to vertex buffer
+        int packed = this.compact ? Color.toNativeRGBA8888(r, g, b, a) : 0;
+        this.putVertex(q[0], q[1], r, g, b, a, packed, s0, t0, flags);  // Bottom Left
+        this.putVertex(q[2], q[3], r, g, b, a, packed, s1, t0, flags);  // Bottom Right
+        this.putVertex(q[4], q[5], r, g, b, a, packed, s1, t1, flags);  // Top Right
+        this.putVertex(q[6], q[7], r, g, b, a, packed, s0, t1, flags);  // Top Left
+        this.verticesCount += 4;
+    }
+
+    /**
+     * Method for sorting the draw commands recorded since the last call and writing them to the vertex buffer. Commands
+     * sharing a texture end up next to each other, so together with the texture slots each batch can bind, a frame
+     * only needs to be flushed once for every MAX_TEXTURE_SLOTS distinct textures per layer.
      */
-    private void updateCurrentTexture(Texture texture)
+    private void drawCommands()
     {
-        if(this.image0 == null)
-            this.image0 = texture;
+        int count = this.commands.size();
+        if(count == 0)
+            return;
+
+        this.commands.sort();
+        float[] data = this.commands.getData();
+        for(int i = 0; i < count; i++)
+        {
+            int cmd = this.commands.get(i);
+            int d = cmd * DrawCommandBuffer.STRIDE;
+            this.drawQuad(this.commands.getTexture(cmd), data[d], data[d + 1], data[d + 2], data[d + 3], data[d + 4], data[d + 5], data[d + 6], data[d + 7], data[d + 8], data[d + 9], data[d + 10], data[d + 11], data[d + 12], data[d + 13], this.commands.useCamera(cmd));
+        }
+        this.commands.clear();
+    }
+
+    /**
+     * Method for uploading the view matrix of the current camera (or the identity matrix if there is no camera) to the
+     * shader program and updating the culling bounds. The shader program must be bound.
+     */
+    private void updateView()
+    {
+        this.view.identity();
+        if(this.camera != null)
+            this.view.set(this.camera.getViewMatrix());
+        this.program.setUniformMatrix4fv("view", this.view);
+
+        // Update the culling bounds to match
+        this.screenBounds.minX = 0.0f;
+        this.screenBounds.minY = 0.0f;
+        this.screenBounds.maxX = this.target != null ? this.target.getWidth() : Display.getViewportWidth();
+        this.screenBounds.maxY = this.target != null ? this.target.getHeight() : Display.getViewportHeight();
+        if(this.camera != null)
+            this.camera.getVisibleBounds(this.screenBounds.maxX, this.screenBounds.maxY, this.cameraBounds);
         else
         {
-            if(this.image0 != texture || this.vertices.remaining() < 32)
-            {
-                this.flush();
-                this.image0 = texture;
-            }
+            this.cameraBounds.minX = this.screenBounds.minX;
+            this.cameraBounds.minY = this.screenBounds.minY;
+            this.cameraBounds.maxX = this.screenBounds.maxX;
+            this.cameraBounds.maxY = this.screenBounds.maxY;
         }
     }
+
+    /**
+     * Method for writing a single vertex to the vertex buffer in the format used by this SpriteBatch
+     *
+     * @param x x-position of the vertex
+     * @param y y-position of the vertex
+     * @param r red component of the vertex color (used by the default vertex format)
+     * @param g green component of the vertex color (used by the default vertex format)
+     * @param b blue component of the vertex color (used by the default vertex format)
+     * @param a alpha component of the vertex color (used by the default vertex format)
+     * @param packed color of the vertex packed by Color.toNativeRGBA8888 (used by the compact vertex format)
+     * @param s s texture coordinate of the vertex
+     * @param t t texture coordinate of the vertex
+     * @param flags the texture slot (unit) of the texture the vertex samples from, or'd with NO_CAMERA_FLAG if the
+     *              vertex shouldn't be transformed by the camera
+     */
+    private void putVertex(float x, float y, float r, float g, float b, float a, int packed, float s, float t, int flags)
+    {
+        putVertex(this.vertices, this.compact, x, y, r, g, b, a, packed, s, t, flags);
+    }
+
+    /**
+     * Method for writing a single vertex to a buffer in either of the SpriteBatch vertex formats (also used by DrawList)
+     */
+    static void putVertex(ByteBuffer buffer, boolean compact, float x, float y, float r, float g, float b, float a, int packed, float s, float t, int flags)
+    {
+        buffer.putFloat(x).putFloat(y);
+        if(compact)
+        {
+            buffer.putInt(packed);
+            buffer.putShort((short) (s * 65535.0f + 0.5f)).putShort((short) (t * 65535.0f + 0.5f));
+            buffer.put((byte) flags).put((byte) 0).putShort((short) 0);
+        }
+        else
+        {
+            buffer.putFloat(r).putFloat(g).putFloat(b).putFloat(a);
+            buffer.putFloat(s).putFloat(t);
+            buffer.putFloat(flags);
+        }
+    }
+
+    /**
+     * Method for getting the size in bytes of a vertex in either of the SpriteBatch vertex formats
+     */
+    static int getVertexSize(boolean compact)
+    {
+        return compact ? COMPACT_VERTEX_SIZE : VERTEX_SIZE;
+    }
+
+    /**
+     * Method for updating the textures bound for the current batch. Up to GL_MAX_TEXTURE_IMAGE_UNITS (capped at
+     * MAX_TEXTURE_SLOTS) different textures can be drawn in a single batch, each bound to its own texture unit. The
+     * SpriteBatch only needs to be flushed when a new texture is drawn and every slot is already in use, or when the
+     * vertex buffer can't fit another quad.
+     *
+     * @param texture the texture about to be drawn
+     * @return the texture slot (unit) the texture is bound to for the current batch
+     */
+    private int updateCurrentTexture(Texture texture)
+    {
+        if(this.vertices.remaining() < 4 * this.vertexSize)
+            this.flush();
+
+        // Textures sharing the same GL texture (i.e. TextureRegions) can share the same slot
+        for(int i = 0; i < this.texturesCount; i++)
+        {
+            if(this.textures[i].getGLTexture() == texture.getGLTexture())
+                return i;
+        }
+
+        if(this.texturesCount == this.textures.length)
+            this.flush();
+
+        // Mark the texture as used this frame (reloading it if it was evicted) before it gets a slot
+        texture.touch();
+        this.textures[this.texturesCount] = texture;
+        return this.texturesCount++;
+    }
 }
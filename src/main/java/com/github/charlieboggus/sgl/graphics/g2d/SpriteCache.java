@@ -0,0 +1,379 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.graphics.gl.GLShaderProgram;
+import com.github.charlieboggus.sgl.graphics.gl.GLState;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexArray;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexBuffer;
+import com.github.charlieboggus.sgl.utility.Color;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL20.GL_MAX_TEXTURE_IMAGE_UNITS;
+
+/**
+ * Cache for geometry that never changes (backgrounds, level geometry, HUD frames, etc). Textures are added to the
+ * cache once, transformed on the CPU and uploaded to a static vertex buffer by build. Every draw after that only
+ * uploads the projection & view matrices and issues one draw call per run of up to MAX_TEXTURE_SLOTS textures, using
+ * the same shaders & vertex format as SpriteBatch.
+ */
+public class SpriteCache
+{
+    private static final Logger logger = Logger.getLogger(SpriteCache.class);
+
+    // Vertex: position (2 floats), color (4 floats), texture coordinates (2 floats), texture slot & flags (1 float)
+    private static final int VERTEX_FLOATS = 9;
+
+    private final Matrix4f projection = new Matrix4f();
+    private final Matrix4f view = new Matrix4f();
+
+    // Scratch storage for the world space corners of the quad being added
+    private final float[] quad = new float[8];
+
+    private final GLShaderProgram program;
+    private final GLVertexArray vao;
+    private GLVertexBuffer vbo;
+    private GLVertexBuffer ibo;
+
+    // Recorded vertices (only kept until the cache is built)
+    private float[] vertices;
+    private int quadsCount;
+
+    // Runs of quads that can be drawn with a single draw call: the first quad of each run, the number of quads in it
+    // and the textures it binds (indexed by texture unit)
+    private final int maxTextures;
+    private int[] runStart;
+    private int[] runQuads;
+    private Texture[][] runTextures;
+    private int[] runTexturesCount;
+    private int runsCount;
+
+    private final int[] textureUnits;
+
+    private Camera camera;
+
+    private boolean isBuilt;
+    private int calls;
+
+    public SpriteCache()
+    {
+        // Initialize Cache state
+        this.vertices = new float[1024 * 4 * VERTEX_FLOATS];
+        this.quadsCount = 0;
+
+        this.maxTextures = Math.min(SpriteBatch.MAX_TEXTURE_SLOTS, glGetInteger(GL_MAX_TEXTURE_IMAGE_UNITS));
+        this.runStart = new int[16];
+        this.runQuads = new int[16];
+        this.runTextures = new Texture[16][];
+        this.runTexturesCount = new int[16];
+        this.runsCount = 0;
+
+        this.textureUnits = new int[SpriteBatch.MAX_TEXTURE_SLOTS];
+        for(int i = 0; i < SpriteBatch.MAX_TEXTURE_SLOTS; i++)
+            this.textureUnits[i] = i;
+
+        this.camera = null;
+
+        this.isBuilt = false;
+        this.calls = 0;
+
+        // Create the Shader Program
+        this.program = new GLShaderProgram();
+        this.program.loadShaders("shaders/renderer.vs", "shaders/renderer.fs");
+        this.program.link();
+        this.program.validate();
+
+        // The vertex array is set up by build, once the size of the cache is known
+        this.vao = new GLVertexArray();
+        this.vbo = null;
+        this.ibo = null;
+    }
+
+    public void dispose()
+    {
+        this.destroyBuffers();
+        this.vao.destroy();
+        this.program.destroy();
+    }
+
+    public void setCamera(Camera camera)
+    {
+        this.camera = camera;
+    }
+
+    public int getRenderCalls()
+    {
+        return this.calls;
+    }
+
+    public int getQuadsCount()
+    {
+        return this.quadsCount;
+    }
+
+    public boolean isBuilt()
+    {
+        return this.isBuilt;
+    }
+
+    /**
+     * Method to clear the cache so it can be recorded again. Any GPU buffers created by build are destroyed.
+     */
+    public void clear()
+    {
+        this.destroyBuffers();
+        for(int i = 0; i < this.runsCount; i++)
+            Arrays.fill(this.runTextures[i], null);
+        this.quadsCount = 0;
+        this.runsCount = 0;
+        this.isBuilt = false;
+    }
+
+    // Recording Methods -----------------------------------------------------------------------------------------------
+
+    public void add(Texture texture, float x, float y)
+    {
+        this.add(texture, x, y, 0.0f, 1.0f, Color.White, true);
+    }
+
+    public void add(Texture texture, float x, float y, boolean useCamera)
+    {
+        this.add(texture, x, y, 0.0f, 1.0f, Color.White, useCamera);
+    }
+
+    public void add(Texture texture, float x, float y, Color c)
+    {
+        this.add(texture, x, y, 0.0f, 1.0f, c, true);
+    }
+
+    public void add(Texture texture, float x, float y, Color c, boolean useCamera)
+    {
+        this.add(texture, x, y, 0.0f, 1.0f, c, useCamera);
+    }
+
+    public void add(Texture texture, float x, float y, float rotation, float scale)
+    {
+        this.add(texture, x, y, rotation, scale, Color.White, true);
+    }
+
+    public void add(Texture texture, float x, float y, float rotation, float scale, Color c)
+    {
+        this.add(texture, x, y, rotation, scale, c, true);
+    }
+
+    /**
+     * Method for adding a texture to the cache. Takes the same parameters as SpriteBatch.drawTexture.
+     *
+     * @param texture The texture to add to the cache
+     * @param x x-position to draw the texture at (xpos of upper left corner)
+     * @param y y-position to draw the texture at (ypos of upper left corner)
+     * @param rotation the angle of rotation to rotate the texture (in degrees)
+     * @param scale the scale of the texture
+     * @param c the color to tint the texture
+     * @param useCamera true to make the texture affected by the camera, false otherwise
+     */
+    public void add(Texture texture, float x, float y, float rotation, float scale, Color c, boolean useCamera)
+    {
+        if(this.isBuilt)
+        {
+            logger.error("SpriteCache has already been built! Clear it before adding more textures.");
+            return;
+        }
+
+        int slot = this.updateCurrentRun(texture);
+        int flags = useCamera ? slot : slot | SpriteBatch.NO_CAMERA_FLAG;
+
+        QuadTransform.transform(this.quad, x, y, texture.getWidth(), texture.getHeight(), rotation, scale);
+        float[] q = this.quad;
+
+        int required = (this.quadsCount + 1) * 4 * VERTEX_FLOATS;
+        if(required > this.vertices.length)
+            this.vertices = Arrays.copyOf(this.vertices, Math.max(required, this.vertices.length * 2));
+
+        int i = this.quadsCount * 4 * VERTEX_FLOATS;
+        i = this.putVertex(i, q[0], q[1], c, texture.getS0(), texture.getT0(), flags);  // Bottom Left
+        i = this.putVertex(i, q[2], q[3], c, texture.getS1(), texture.getT0(), flags);  // Bottom Right
+        i = this.putVertex(i, q[4], q[5], c, texture.getS1(), texture.getT1(), flags);  // Top Right
+        this.putVertex(i, q[6], q[7], c, texture.getS0(), texture.getT1(), flags);      // Top Left
+
+        this.quadsCount++;
+        this.runQuads[this.runsCount - 1]++;
+    }
+
+    /**
+     * Method for uploading the recorded textures to a static vertex buffer. After the cache has been built it can be
+     * drawn, but no more textures can be added until it is cleared.
+     */
+    public void build()
+    {
+        if(this.isBuilt)
+        {
+            logger.warning("SpriteCache has already been built!");
+            return;
+        }
+
+        this.vao.bind();
+            this.vbo = new GLVertexBuffer();
+            this.vbo.bind();
+            this.vbo.uploadBufferData(Arrays.copyOf(this.vertices, this.quadsCount * 4 * VERTEX_FLOATS), GL_STATIC_DRAW);
+
+            int stride = VERTEX_FLOATS * Float.BYTES;
+
+            // Position Attribute
+            this.vao.setVertexAttributePointer(0, 2, GL_FLOAT, stride, 0);
+            this.vao.enableVertexAttribute(0);
+
+            // Color Attribute
+            this.vao.setVertexAttributePointer(1, 4, GL_FLOAT, stride, 2 * Float.BYTES);
+            this.vao.enableVertexAttribute(1);
+
+            // Texture Coordinates Attribute
+            this.vao.setVertexAttributePointer(2, 2, GL_FLOAT, stride, 6 * Float.BYTES);
+            this.vao.enableVertexAttribute(2);
+
+            // Texture Slot Attribute
+            this.vao.setVertexAttributePointer(3, 1, GL_FLOAT, stride, 8 * Float.BYTES);
+            this.vao.enableVertexAttribute(3);
+
+            // Quad Indices (4 vertices per quad)
+            this.ibo = GLVertexBuffer.createQuadIndexBuffer(Math.max(1, this.quadsCount));
+        this.vao.unbind();
+        this.vbo.unbind();
+        this.ibo.unbind();
+
+        // The vertices live on the GPU now
+        this.vertices = new float[4 * VERTEX_FLOATS];
+        this.isBuilt = true;
+    }
+
+    /**
+     * Method for drawing the cache. Must not be called between the begin and end of a SpriteBatch or ShapeBatch.
+     */
+    public void draw()
+    {
+        if(!this.isBuilt)
+        {
+            logger.error("SpriteCache has not been built!");
+            return;
+        }
+
+        this.calls = 0;
+        if(this.quadsCount == 0)
+            return;
+
+        this.projection.identity();
+        this.projection.ortho2D(0.0f, Display.getViewportWidth(), Display.getViewportHeight(), 0.0f);
+        this.view.identity();
+        if(this.camera != null)
+            this.view.set(this.camera.getViewMatrix());
+
+        // Bind the shader program & set global uniforms
+        this.program.bind();
+        this.program.setUniform1iv("images", this.textureUnits);
+        this.program.setUniformMatrix4fv("projection", this.projection);
+        this.program.setUniformMatrix4fv("view", this.view);
+
+        // Set the OpenGL state
+        GLState.enable(GL_BLEND);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        if(Display.getAntialiasMode().isMultisampled())
+            GLState.enable(GL_MULTISAMPLE);
+
+        // Draw each run with the textures it uses bound to their texture units
+        this.vao.bind();
+        for(int r = 0; r < this.runsCount; r++)
+        {
+            Texture[] textures = this.runTextures[r];
+            int count = this.runTexturesCount[r];
+            for(int i = 0; i < count; i++)
+            {
+                textures[i].touch();
+                textures[i].bind(i);
+            }
+
+            glDrawElements(GL_TRIANGLES, this.runQuads[r] * 6, GL_UNSIGNED_INT, (long) this.runStart[r] * 6 * Integer.BYTES);
+            this.calls++;
+        }
+        this.vao.unbind();
+        this.program.unbind();
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    private int putVertex(int i, float x, float y, Color c, float s, float t, int flags)
+    {
+        float[] v = this.vertices;
+        v[i++] = x;
+        v[i++] = y;
+        v[i++] = c.r();
+        v[i++] = c.g();
+        v[i++] = c.b();
+        v[i++] = c.a();
+        v[i++] = s;
+        v[i++] = t;
+        v[i++] = flags;
+        return i;
+    }
+
+    /**
+     * Method for finding the texture slot of the given texture in the current run, starting a new run if the texture
+     * isn't part of the current run and every slot is already in use.
+     *
+     * @param texture the texture about to be added
+     * @return the texture slot (unit) the texture is bound to when the current run is drawn
+     */
+    private int updateCurrentRun(Texture texture)
+    {
+        if(this.runsCount > 0)
+        {
+            int r = this.runsCount - 1;
+            Texture[] textures = this.runTextures[r];
+            for(int i = 0; i < this.runTexturesCount[r]; i++)
+            {
+                if(textures[i].getGLTexture() == texture.getGLTexture())
+                    return i;
+            }
+
+            if(this.runTexturesCount[r] < this.maxTextures)
+            {
+                textures[this.runTexturesCount[r]] = texture;
+                return this.runTexturesCount[r]++;
+            }
+        }
+
+        // Start a new run
+        if(this.runsCount == this.runStart.length)
+        {
+            int capacity = this.runsCount * 2;
+            this.runStart = Arrays.copyOf(this.runStart, capacity);
+            this.runQuads = Arrays.copyOf(this.runQuads, capacity);
+            this.runTextures = Arrays.copyOf(this.runTextures, capacity);
+            this.runTexturesCount = Arrays.copyOf(this.runTexturesCount, capacity);
+        }
+
+        int r = this.runsCount++;
+        if(this.runTextures[r] == null)
+            this.runTextures[r] = new Texture[this.maxTextures];
+        this.runStart[r] = this.quadsCount;
+        this.runQuads[r] = 0;
+        this.runTextures[r][0] = texture;
+        this.runTexturesCount[r] = 1;
+        return 0;
+    }
+
+    private void destroyBuffers()
+    {
+        if(this.ibo != null)
+            this.ibo.destroy();
+        if(this.vbo != null)
+            this.vbo.destroy();
+        this.ibo = null;
+        this.vbo = null;
+    }
+}
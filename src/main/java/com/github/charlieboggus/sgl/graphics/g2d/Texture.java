@@ -3,21 +3,31 @@ package com.github.charlieboggus.sgl.graphics.g2d;
 import com.github.charlieboggus.sgl.core.Display;
 import com.github.charlieboggus.sgl.graphics.gl.GLTexture;
 import com.github.charlieboggus.sgl.utility.Color;
+import com.github.charlieboggus.sgl.utility.Logger;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.stb.STBImage;
+import org.lwjgl.stb.STBImageResize;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
+import java.io.IOException;
 import java.nio.IntBuffer;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
 
 public class Texture
 {
+    private static final Logger logger = Logger.getLogger(Texture.class);
+
     private GLTexture tex;
 
+    // Residency state of the GL texture (shared by copies & regions of this texture)
+    TextureResidency.Entry residency;
+
     private int width;
     private int height;
 
@@ -37,10 +47,35 @@ public class Texture
         this.t1 = 1.0f;
 
         this.tex = texture.tex;
+        this.residency = texture.residency;
+    }
+
+    /**
+     * Creates a Texture that wraps an existing GL texture (used by textures that manage their own storage)
+     */
+    Texture(GLTexture tex, int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+
+        this.s0 = 0.0f;
+        this.t0 = 0.0f;
+        this.s1 = 1.0f;
+        this.t1 = 1.0f;
+
+        this.tex = tex;
+        this.residency = null;
     }
 
     public Texture(String file)
     {
+        // KTX containers hold GPU compressed data & prebuilt mip levels, uploaded as is
+        if(KTXFile.isKTX(file))
+        {
+            this.generateCompressedTexture(file);
+            return;
+        }
+
         int width;
         int height;
         int components;
@@ -59,37 +94,37 @@ public class Texture
             components = cb.get(0);
         }
 
-        this.generateTexture(width, height, components, data);
+        this.generateTexture(width, height, components, data, file);
+        if(data != null)
+            STBImage.stbi_image_free(data);
     }
 
     public Texture(int width, int height)
     {
-        ByteBuffer data = BufferUtils.createByteBuffer(width * height * 4);
-        int i = 0;
-        for (int y = 0; y < height; y++)
-        {
-            for (int x = 0; x < width; x++)
-            {
-                Color c = (x / 16) % 2 == 0 ? ((y / 16) % 2 == 0 ? Color.White : Color.Coral) : ((y / 16) % 2 == 0 ? Color.Coral : Color.White);
-                data.put(i, (byte) c.redByte());
-                data.put(i + 1, (byte) c.greenByte());
-                data.put(i + 2, (byte) c.blueByte());
-                data.put(i + 3, (byte) c.alphaByte());
-                i += 4;
-            }
-        }
-
-        this.generateTexture(width, height, 4, data);
+        this.generateTexture(width, height, 4, createCheckerboard(width, height), null);
     }
 
     public Texture(int width, int height, int components, ByteBuffer data)
     {
-        this.generateTexture(width, height, components, data);
+        this.generateTexture(width, height, components, data, null);
+    }
+
+    /**
+     * Method to load a texture without blocking the render thread. The image is decoded on a background thread and
+     * uploaded over the following frames, within the per frame upload budget (see TextureLoader).
+     *
+     * @param file the image file to load
+     * @return a future completed on the render thread once the texture has been uploaded
+     */
+    public static CompletableFuture<Texture> loadAsync(String file)
+    {
+        return TextureLoader.load(file);
     }
 
     public void dispose()
     {
         this.tex.destroy();
+        TextureResidency.unregister(this.residency);
     }
 
     public int getWidth()
@@ -117,6 +152,26 @@ public class Texture
         this.tex.unbind();
     }
 
+    void unbind(int unit)
+    {
+        this.tex.unbind(unit);
+    }
+
+    GLTexture getGLTexture()
+    {
+        return this.tex;
+    }
+
+    /**
+     * Method to mark the texture as used in the current frame, reloading it if it has been evicted. Must be called by
+     * renderers before binding the texture.
+     */
+    void touch()
+    {
+        if(this.residency != null)
+            TextureResidency.touch(this.residency);
+    }
+
     float getS0()
     {
         return this.s0;
@@ -137,7 +192,7 @@ public class Texture
         return this.t1;
     }
 
-    private void generateTexture(int width, int height, int components, ByteBuffer data)
+    private void generateTexture(int width, int height, int components, ByteBuffer data, String file)
     {
         this.width = width;
         this.height = height;
@@ -148,13 +203,200 @@ public class Texture
         this.t1 = 1.0f;
 
         this.tex = new GLTexture();
-        this.tex.bind();
-        this.tex.uploadTextureData((components == 4) ? GL_RGBA8 : GL_RGB, width, height, (components == 4) ? GL_RGBA : GL_RGB, GL_UNSIGNED_BYTE, data);
-        this.tex.generateMipmap();
-        this.tex.setWrap(GL_CLAMP_TO_EDGE, GL_CLAMP_TO_EDGE);
-        this.tex.setFilter(Display.getFilterMode().getMinFilter(), Display.getFilterMode().getMagFilter());
+        long bytes = uploadImage(this.tex, width, height, components, data);
+        this.residency = TextureResidency.register(this.tex, file, bytes);
+    }
+
+    private void generateCompressedTexture(String file)
+    {
+        KTXFile ktx;
+        try
+        {
+            ktx = KTXFile.read(file);
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to load texture " + file + ": " + e.getMessage());
+            this.generateTexture(1, 1, 4, createCheckerboard(1, 1), null);
+            return;
+        }
+
+        if(ktx.isCompressed() && !GLTexture.isCompressedFormatSupported(ktx.internalFormat))
+        {
+            logger.error("Texture " + file + " uses a compressed format the driver doesn't support!");
+            this.generateTexture(ktx.width, ktx.height, 4, createCheckerboard(ktx.width, ktx.height), null);
+            return;
+        }
+
+        this.width = ktx.width;
+        this.height = ktx.height;
+
+        this.s0 = 0.0f;
+        this.t0 = 0.0f;
+        this.s1 = 1.0f;
+        this.t1 = 1.0f;
+
+        this.tex = new GLTexture();
+        long bytes = uploadKTX(this.tex, ktx, 0);
+        this.residency = TextureResidency.register(this.tex, file, bytes);
+    }
+
+    /**
+     * Method to reload an evicted texture from its file into the same GL texture object
+     *
+     * @param tex the evicted GL texture
+     * @param file the file the texture was loaded from
+     * @param skipLevels the number of mip levels to skip (each halves the width & height of the reloaded texture)
+     * @return the estimated size of the reloaded texture in video memory
+     */
+    static long reload(GLTexture tex, String file, int skipLevels)
+    {
+        tex.create();
+
+        if(KTXFile.isKTX(file))
+        {
+            try
+            {
+                KTXFile ktx = KTXFile.read(file);
+                if(!ktx.isCompressed() || GLTexture.isCompressedFormatSupported(ktx.internalFormat))
+                    return uploadKTX(tex, ktx, skipLevels);
+            }
+            catch(IOException e)
+            {
+                logger.error("Failed to reload texture " + file + ": " + e.getMessage());
+            }
+            return uploadImage(tex, 1, 1, 4, createCheckerboard(1, 1));
+        }
+
+        try(MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer wb = stack.mallocInt(1);
+            IntBuffer hb = stack.mallocInt(1);
+            IntBuffer cb = stack.mallocInt(1);
+            STBImage.stbi_set_flip_vertically_on_load(false);
+
+            ByteBuffer data = STBImage.stbi_load(file, wb, hb, cb, 0);
+            if(data == null)
+            {
+                logger.error("Failed to reload texture " + file);
+                return uploadImage(tex, 1, 1, 4, createCheckerboard(1, 1));
+            }
+
+            int width = wb.get(0);
+            int height = hb.get(0);
+            int components = cb.get(0);
+            if(skipLevels <= 0)
+            {
+                long bytes = uploadImage(tex, width, height, components, data);
+                STBImage.stbi_image_free(data);
+                return bytes;
+            }
+
+            // Downscale the image as if the largest mip levels were dropped
+            int w = Math.max(1, width >> skipLevels);
+            int h = Math.max(1, height >> skipLevels);
+            ByteBuffer scaled = MemoryUtil.memAlloc(w * h * components);
+            STBImageResize.stbir_resize_uint8(data, width, height, 0, scaled, w, h, 0, components);
+            STBImage.stbi_image_free(data);
+
+            long bytes = uploadImage(tex, w, h, components, scaled);
+            MemoryUtil.memFree(scaled);
+            return bytes;
+        }
+    }
+
+    /**
+     * Method to upload pixel data to a GL texture with the texture defaults
+     *
+     * @return the estimated size of the texture in video memory (including mipmaps)
+     */
+    private static long uploadImage(GLTexture tex, int width, int height, int components, ByteBuffer data)
+    {
+        tex.bind();
+        tex.uploadTextureData((components == 4) ? GL_RGBA8 : GL_RGB, width, height, (components == 4) ? GL_RGBA : GL_RGB, GL_UNSIGNED_BYTE, data);
+        setParameters(tex);
+        tex.unbind();
+
+        return (long) width * height * components * 4 / 3;
+    }
+
+    /**
+     * Method to upload the mip levels of a KTX container to a GL texture with the texture defaults
+     *
+     * @param skipLevels the number of mip levels to skip (at least one level is always uploaded)
+     * @return the estimated size of the texture in video memory
+     */
+    private static long uploadKTX(GLTexture tex, KTXFile ktx, int skipLevels)
+    {
+        int first = Math.max(0, Math.min(skipLevels, ktx.levels.length - 1));
+        long bytes = 0;
+
+        tex.bind();
+        for(int level = first; level < ktx.levels.length; level++)
+        {
+            int w = Math.max(1, ktx.width >> level);
+            int h = Math.max(1, ktx.height >> level);
+            if(ktx.isCompressed())
+                tex.uploadCompressedTextureData(level - first, ktx.internalFormat, w, h, ktx.levels[level]);
+            else
+                tex.uploadTextureData(level - first, ktx.internalFormat, w, h, ktx.format, ktx.type, ktx.rowAlignment, ktx.levels[level]);
+            bytes += ktx.levels[level].remaining();
+        }
+
+        // Only generate mipmaps if the container asks for it & can't provide them (compressed data can't be generated)
+        if(ktx.generateMipmaps && !ktx.isCompressed())
+        {
+            tex.generateMipmap();
+            bytes = bytes * 4 / 3;
+        }
+        else
+            tex.setMaxLevel(ktx.levels.length - 1 - first);
+        setSampling(tex);
+        tex.unbind();
+
+        return bytes;
+    }
+
+    /**
+     * Method to create the checkerboard pattern used for generated & missing textures
+     */
+    private static ByteBuffer createCheckerboard(int width, int height)
+    {
+        ByteBuffer data = BufferUtils.createByteBuffer(width * height * 4);
+        int i = 0;
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                Color c = (x / 16) % 2 == 0 ? ((y / 16) % 2 == 0 ? Color.White : Color.Coral) : ((y / 16) % 2 == 0 ? Color.Coral : Color.White);
+                data.put(i, (byte) c.redByte());
+                data.put(i + 1, (byte) c.greenByte());
+                data.put(i + 2, (byte) c.blueByte());
+                data.put(i + 3, (byte) c.alphaByte());
+                i += 4;
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Method to generate mipmaps for the bound texture & set its wrap and filter modes to the texture defaults
+     */
+    static void setParameters(GLTexture tex)
+    {
+        tex.generateMipmap();
+        setSampling(tex);
+    }
+
+    /**
+     * Method to set the wrap and filter modes of the bound texture to the texture defaults
+     */
+    private static void setSampling(GLTexture tex)
+    {
+        tex.setWrap(GL_CLAMP_TO_EDGE, GL_CLAMP_TO_EDGE);
+        tex.setFilter(Display.getFilterMode().getMinFilter(), Display.getFilterMode().getMagFilter());
         if (Display.getFilterMode().isAnisotropic())
-            this.tex.setAnisotropicFilter(Display.getFilterMode().getSamples());
-        this.tex.unbind();
+            tex.setAnisotropicFilter(Display.getFilterMode().getSamples());
     }
 }
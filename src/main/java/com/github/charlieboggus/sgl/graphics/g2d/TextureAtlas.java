@@ -1,9 +1,551 @@
 package com.github.charlieboggus.sgl.graphics.g2d;
 
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.stb.STBImage;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs many images into one or more atlas pages at runtime. Images are added by name, then pack places them with a
+ * MaxRects packer, copies them into the page textures & creates a TextureRegion for each of them. Regions of the same
+ * page share its texture, so SpriteBatch can draw them all without switching textures. Each image is surrounded by
+ * padding filled with copies of its edge pixels, so filtering & mipmapping don't bleed neighbouring images into it.
+ * Regions must not be disposed individually, disposing the atlas disposes its pages. Atlases can also be packed
+ * offline with write and loaded from the resulting file with load.
+ */
 public class TextureAtlas
 {
+    private static final Logger logger = Logger.getLogger(TextureAtlas.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 2048;
+    private static final int DEFAULT_PADDING = 2;
+
+    // Atlas file layout (little endian):
+    //   header (32 bytes): magic "SGLA", version, pages count, regions count, regions offset, names offset, unused
+    //   pages (16 bytes each): width, height, offset of the page's RGBA8 pixels (long)
+    //   regions (40 bytes each, sorted by name hash): name hash (long), name offset & length, page, x, y, width,
+    //                                                 height, unused
+    //   names: UTF-8 region names
+    //   page pixels (each aligned to DATA_ALIGNMENT bytes)
+    private static final int MAGIC = 0x414C4753;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int PAGE_ENTRY_SIZE = 16;
+    private static final int REGION_ENTRY_SIZE = 40;
+    private static final int DATA_ALIGNMENT = 4096;
+
+    /**
+     * Image added to the atlas that hasn't been packed yet
+     */
+    private static class Image
+    {
+        private final String name;
+        private final int width;
+        private final int height;
+        private final ByteBuffer pixels;
+        private final boolean isLoaded;
+
+        private int page;
+        private int x;
+        private int y;
+
+        private Image(String name, int width, int height, ByteBuffer pixels, boolean isLoaded)
+        {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+            this.isLoaded = isLoaded;
+        }
+    }
+
+    private final int pageWidth;
+    private final int pageHeight;
+    private final int padding;
+
+    private final List<Image> images = new ArrayList<>();
+    private final List<Texture> pages = new ArrayList<>();
+    private final Map<String, TextureRegion> regions = new HashMap<>();
+    private final List<int[]> pageSizes = new ArrayList<>();
+    private boolean isPacked;
+
+    // Mapped atlas file & region index of an atlas created by load (regions are created as they're looked up)
+    private ByteBuffer mapped;
+    private int mappedRegionsCount;
+    private int mappedRegionsOffset;
+    private int mappedNamesOffset;
+
+    public TextureAtlas()
+    {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE, DEFAULT_PADDING);
+    }
+
+    /**
+     * Creates a new TextureAtlas
+     *
+     * @param pageWidth the width of each atlas page in pixels
+     * @param pageHeight the height of each atlas page in pixels
+     * @param padding the number of pixels of extruded edge pixels around each image
+     */
+    public TextureAtlas(int pageWidth, int pageHeight, int padding)
+    {
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.padding = Math.max(0, padding);
+        this.isPacked = false;
+
+        this.mapped = null;
+        this.mappedRegionsCount = 0;
+        this.mappedRegionsOffset = 0;
+        this.mappedNamesOffset = 0;
+    }
+
     public void dispose()
     {
+        this.freeImages();
+        for(Texture page : this.pages)
+            page.dispose();
+        this.pages.clear();
+        this.regions.clear();
+        this.mapped = null;
+    }
+
+    /**
+     * Method to add an image file to the atlas
+     *
+     * @param name the name to find the image's region by once the atlas is packed
+     * @param file the image file to add
+     */
+    public void add(String name, String file)
+    {
+        try(MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer wb = stack.mallocInt(1);
+            IntBuffer hb = stack.mallocInt(1);
+            IntBuffer cb = stack.mallocInt(1);
+
+            ByteBuffer pixels = STBImage.stbi_load(file, wb, hb, cb, 4);
+            if(pixels == null)
+            {
+                logger.error("Failed to load atlas image: " + file);
+                return;
+            }
+
+            this.add(new Image(name, wb.get(0), hb.get(0), pixels, true));
+        }
+    }
+
+    /**
+     * Method to add raw pixels to the atlas. The pixels are only read by pack.
+     *
+     * @param name the name to find the image's region by once the atlas is packed
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param pixels tightly packed RGBA8 pixels, top row first (from the buffer's position, in any byte order)
+     */
+    public void add(String name, int width, int height, ByteBuffer pixels)
+    {
+        if(pixels.remaining() < (long) width * height * 4)
+        {
+            logger.error("Atlas image " + name + " has " + pixels.remaining() + " bytes of pixels, " + ((long) width * height * 4) + " are needed!");
+            return;
+        }
+        this.add(new Image(name, width, height, pixels, false));
+    }
+
+    /**
+     * Method to pack all added images into atlas pages & create their regions. No more images can be added afterwards.
+     */
+    public void pack()
+    {
+        if(this.isPacked)
+        {
+            logger.error("TextureAtlas has already been packed!");
+            return;
+        }
+
+        List<Image> placed = this.layout();
+        for(int i = 0; i < this.pageSizes.size(); i++)
+        {
+            int[] size = this.pageSizes.get(i);
+            this.pages.add(new Texture(size[0], size[1], 4, this.compose(placed, i)));
+        }
+
+        for(Image image : placed)
+            this.regions.put(image.name, new TextureRegion(this.pages.get(image.page), image.x, image.y, image.width, image.height));
+
+        this.freeImages();
+        this.isPacked = true;
+    }
+
+    /**
+     * Method to pack all added images & write the pages and region index to a binary atlas file (see load) instead of
+     * uploading them. Doesn't need a GL context, so it can be used by offline tools (see TextureAtlasPacker). No more
+     * images can be added afterwards.
+     *
+     * @param file the atlas file to write
+     */
+    public void write(String file)
+    {
+        if(this.isPacked)
+        {
+            logger.error("TextureAtlas has already been packed!");
+            return;
+        }
+
+        List<Image> placed = this.layout();
+
+        // Regions are sorted by name hash (then name) so load can binary search them
+        byte[][] names = new byte[placed.size()][];
+        long[] hashes = new long[placed.size()];
+        Integer[] order = new Integer[placed.size()];
+        for(int i = 0; i < placed.size(); i++)
+        {
+            names[i] = placed.get(i).name.getBytes(StandardCharsets.UTF_8);
+            hashes[i] = hash(names[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) ->
+        {
+            int c = Long.compare(hashes[a], hashes[b]);
+            return c != 0 ? c : placed.get(a).name.compareTo(placed.get(b).name);
+        });
+
+        int namesSize = 0;
+        for(byte[] name : names)
+            namesSize += name.length;
+
+        int pagesOffset = HEADER_SIZE;
+        int regionsOffset = pagesOffset + this.pageSizes.size() * PAGE_ENTRY_SIZE;
+        int namesOffset = regionsOffset + placed.size() * REGION_ENTRY_SIZE;
+        long dataOffset = align(namesOffset + namesSize);
+
+        ByteBuffer index = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(MAGIC).putInt(VERSION).putInt(this.pageSizes.size()).putInt(placed.size());
+        index.putInt(regionsOffset).putInt(namesOffset).putInt(0).putInt(0);
+
+        long offset = dataOffset;
+        for(int[] size : this.pageSizes)
+        {
+            index.putInt(size[0]).putInt(size[1]).putLong(offset);
+            offset = align(offset + (long) size[0] * size[1] * 4);
+        }
+
+        int nameOffset = 0;
+        for(int i : order)
+        {
+            Image image = placed.get(i);
+            index.putLong(hashes[i]).putInt(nameOffset).putInt(names[i].length);
+            index.putInt(image.page).putInt(image.x).putInt(image.y).putInt(image.width).putInt(image.height).putInt(0);
+            nameOffset += names[i].length;
+        }
+        for(int i : order)
+            index.put(names[i]);
+        index.clear();
+
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            writeFully(channel, index, 0);
+            offset = dataOffset;
+            for(int i = 0; i < this.pageSizes.size(); i++)
+            {
+                int[] size = this.pageSizes.get(i);
+                writeFully(channel, this.compose(placed, i), offset);
+                offset = align(offset + (long) size[0] * size[1] * 4);
+            }
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to write atlas file: " + file);
+        }
+
+        this.freeImages();
+        this.isPacked = true;
+    }
+
+    /**
+     * Method to load an atlas written by write. The file is memory mapped: the pages are uploaded straight from the
+     * mapping and regions are looked up in the mapped index when they're first requested, so nothing is decoded or
+     * parsed up front.
+     *
+     * @param file the atlas file to load
+     * @return the loaded atlas, or null if the file couldn't be loaded
+     */
+    public static TextureAtlas load(String file)
+    {
+        ByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to load atlas file: " + file);
+            return null;
+        }
+
+        if(mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION)
+        {
+            logger.error("Invalid atlas file: " + file);
+            return null;
+        }
+
+        TextureAtlas atlas = new TextureAtlas(0, 0, 0);
+        int pagesCount = mapped.getInt(8);
+        atlas.mapped = mapped;
+        atlas.mappedRegionsCount = mapped.getInt(12);
+        atlas.mappedRegionsOffset = mapped.getInt(16);
+        atlas.mappedNamesOffset = mapped.getInt(20);
 
+        for(int i = 0; i < pagesCount; i++)
+        {
+            int entry = HEADER_SIZE + i * PAGE_ENTRY_SIZE;
+            int width = mapped.getInt(entry);
+            int height = mapped.getInt(entry + 4);
+            int offset = (int) mapped.getLong(entry + 8);
+
+            ByteBuffer data = mapped.duplicate();
+            data.position(offset).limit(offset + width * height * 4);
+            atlas.pages.add(new Texture(width, height, 4, data.slice()));
+        }
+
+        atlas.isPacked = true;
+        return atlas;
+    }
+
+    /**
+     * Method to get the region of a packed image
+     *
+     * @param name the name the image was added with
+     * @return the region of the image, or null if there is no image with the given name
+     */
+    public TextureRegion findRegion(String name)
+    {
+        TextureRegion region = this.regions.get(name);
+        if(region == null && this.mapped != null)
+        {
+            region = this.findMappedRegion(name);
+            if(region != null)
+                this.regions.put(name, region);
+        }
+        return region;
+    }
+
+    public List<Texture> getPages()
+    {
+        return Collections.unmodifiableList(this.pages);
+    }
+
+    public int getRegionsCount()
+    {
+        return this.mapped != null ? this.mappedRegionsCount : this.regions.size();
+    }
+
+    public boolean isPacked()
+    {
+        return this.isPacked;
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    private void add(Image image)
+    {
+        if(this.isPacked)
+        {
+            logger.error("TextureAtlas has already been packed! Images can't be added anymore.");
+            if(image.isLoaded)
+                STBImage.stbi_image_free(image.pixels);
+            return;
+        }
+        if(image.width <= 0 || image.height <= 0)
+        {
+            logger.error("Atlas image " + image.name + " is empty!");
+            return;
+        }
+        this.images.add(image);
+    }
+
+    /**
+     * Method to place every added image on a page. Fills in pageSizes & returns the images largest first.
+     */
+    private List<Image> layout()
+    {
+        // Place the largest images first, they're the hardest to fit
+        List<Image> sorted = new ArrayList<>(this.images);
+        sorted.sort((a, b) ->
+        {
+            int side = Integer.compare(Math.max(b.width, b.height), Math.max(a.width, a.height));
+            return side != 0 ? side : Integer.compare(b.width * b.height, a.width * a.height);
+        });
+
+        List<MaxRectsPacker> packers = new ArrayList<>();
+        for(Image image : sorted)
+        {
+            int w = image.width + 2 * this.padding;
+            int h = image.height + 2 * this.padding;
+
+            int[] rect = null;
+            for(int i = 0; i < packers.size() && rect == null; i++)
+            {
+                rect = packers.get(i).insert(w, h);
+                image.page = i;
+            }
+
+            // Start a new page (larger than the default size if the image needs it)
+            if(rect == null)
+            {
+                MaxRectsPacker packer = new MaxRectsPacker(Math.max(this.pageWidth, w), Math.max(this.pageHeight, h));
+                packers.add(packer);
+                rect = packer.insert(w, h);
+                image.page = packers.size() - 1;
+            }
+
+            image.x = rect[0] + this.padding;
+            image.y = rect[1] + this.padding;
+        }
+
+        this.pageSizes.clear();
+        for(MaxRectsPacker packer : packers)
+            this.pageSizes.add(new int[] { packer.getWidth(), packer.getHeight() });
+        return sorted;
+    }
+
+    /**
+     * Method to copy the images placed on a page into a new pixel buffer
+     */
+    private ByteBuffer compose(List<Image> placed, int page)
+    {
+        int[] size = this.pageSizes.get(page);
+        ByteBuffer data = BufferUtils.createByteBuffer(size[0] * size[1] * 4);
+        for(Image image : placed)
+        {
+            if(image.page == page)
+                this.copy(image, data.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer(), size[0]);
+        }
+        return data;
+    }
+
+    /**
+     * Method to binary search the mapped region index of a loaded atlas
+     */
+    private TextureRegion findMappedRegion(String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+
+        int lo = 0;
+        int hi = this.mappedRegionsCount - 1;
+        while(lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            long h = this.mapped.getLong(this.mappedRegionsOffset + mid * REGION_ENTRY_SIZE);
+            if(h < hash)
+                lo = mid + 1;
+            else if(h > hash)
+                hi = mid - 1;
+            else
+            {
+                // Walk back to the first entry with the same hash, then compare names
+                while(mid > 0 && this.mapped.getLong(this.mappedRegionsOffset + (mid - 1) * REGION_ENTRY_SIZE) == hash)
+                    mid--;
+                for(int i = mid; i < this.mappedRegionsCount; i++)
+                {
+                    int entry = this.mappedRegionsOffset + i * REGION_ENTRY_SIZE;
+                    if(this.mapped.getLong(entry) != hash)
+                        break;
+                    if(this.nameEquals(entry, bytes))
+                    {
+                        Texture page = this.pages.get(this.mapped.getInt(entry + 16));
+                        return new TextureRegion(page, this.mapped.getInt(entry + 20), this.mapped.getInt(entry + 24), this.mapped.getInt(entry + 28), this.mapped.getInt(entry + 32));
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean nameEquals(int entry, byte[] name)
+    {
+        int offset = this.mappedNamesOffset + this.mapped.getInt(entry + 8);
+        if(this.mapped.getInt(entry + 12) != name.length)
+            return false;
+        for(int i = 0; i < name.length; i++)
+        {
+            if(this.mapped.get(offset + i) != name[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to hash a region name (64 bit FNV-1a)
+     */
+    private static long hash(byte[] name)
+    {
+        long h = 0xcbf29ce484222325L;
+        for(byte b : name)
+        {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + DATA_ALIGNMENT - 1) & -DATA_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException
+    {
+        while(buffer.hasRemaining())
+            offset += channel.write(buffer, offset);
+    }
+
+    /**
+     * Method to copy an image into its place on a page, extruding its edge pixels into the padding around it
+     */
+    private void copy(Image image, IntBuffer page, int pageWidth)
+    {
+        // Both views have to use the same byte order, or the channels of each pixel would be swapped
+        IntBuffer src = image.pixels.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+        int p = this.padding;
+        for(int y = -p; y < image.height + p; y++)
+        {
+            int sy = Math.min(Math.max(y, 0), image.height - 1);
+            int row = (image.y + y) * pageWidth + image.x;
+            for(int x = -p; x < image.width + p; x++)
+            {
+                int sx = Math.min(Math.max(x, 0), image.width - 1);
+                page.put(row + x, src.get(sy * image.width + sx));
+            }
+        }
+    }
+
+    private void freeImages()
+    {
+        for(Image image : this.images)
+        {
+            if(image.isLoaded)
+                STBImage.stbi_image_free(image.pixels);
+        }
+        this.images.clear();
     }
 }
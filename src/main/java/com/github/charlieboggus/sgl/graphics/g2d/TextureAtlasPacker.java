@@ -0,0 +1,75 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline atlas packer. Packs every image in a directory (and its sub directories) into a binary atlas file that can
+ * be loaded with TextureAtlas.load. Regions are named by their path relative to the input directory, using '/' as the
+ * separator & without the file extension (i.e. "enemies/slime.png" becomes "enemies/slime").
+ *
+ * Usage: TextureAtlasPacker input-directory output-file [page-size] [padding]
+ */
+public class TextureAtlasPacker
+{
+    private static final Logger logger = Logger.getLogger(TextureAtlasPacker.class);
+
+    private static final String[] EXTENSIONS = { ".png", ".jpg", ".jpeg", ".bmp", ".tga" };
+
+    public static void main(String[] args)
+    {
+        if(args.length < 2)
+        {
+            logger.error("Usage: TextureAtlasPacker input-directory output-file [page-size] [padding]");
+            return;
+        }
+
+        Path input = Paths.get(args[0]);
+        int pageSize = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+        int padding = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        List<Path> files;
+        try(Stream<Path> stream = Files.walk(input))
+        {
+            files = stream.filter(Files::isRegularFile).filter(TextureAtlasPacker::isImage).sorted().collect(Collectors.toList());
+        }
+        catch(IOException e)
+        {
+            logger.error("Failed to read input directory: " + input);
+            return;
+        }
+
+        TextureAtlas atlas = new TextureAtlas(pageSize, pageSize, padding);
+        for(Path file : files)
+            atlas.add(getRegionName(input, file), file.toString());
+        atlas.write(args[1]);
+
+        logger.info("Packed " + files.size() + " images into " + args[1]);
+    }
+
+    private static boolean isImage(Path file)
+    {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for(String extension : EXTENSIONS)
+        {
+            if(name.endsWith(extension))
+                return true;
+        }
+        return false;
+    }
+
+    private static String getRegionName(Path input, Path file)
+    {
+        String name = input.relativize(file).toString().replace('\\', '/');
+        int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf('/') ? name.substring(0, dot) : name;
+    }
+}
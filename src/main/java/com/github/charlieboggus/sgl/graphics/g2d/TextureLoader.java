@@ -0,0 +1,274 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.graphics.gl.GLTexture;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexBuffer;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.lwjgl.stb.STBImage;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Background texture loader used by Texture.loadAsync. Images are decoded by a pool of background threads, then
+ * uploaded by update on the render thread through a pixel buffer object. Each frame uploads at most
+ * Display.getTextureUploadBudget() bytes (but always at least one row), so large textures are uploaded a band of rows
+ * at a time over several frames. Mipmaps are generated and the future completed once the last row has been uploaded.
+ */
+public final class TextureLoader
+{
+    private static final Logger logger = Logger.getLogger(TextureLoader.class);
+
+    /**
+     * Decoded image waiting to be (or being) uploaded
+     */
+    private static class Upload
+    {
+        private final CompletableFuture<Texture> future;
+        private final String file;
+        private final ByteBuffer data;
+        private final int width;
+        private final int height;
+        private final int components;
+
+        private GLTexture tex;
+        private int row;
+
+        private Upload(CompletableFuture<Texture> future, String file, ByteBuffer data, int width, int height, int components)
+        {
+            this.future = future;
+            this.file = file;
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.components = components;
+            this.tex = null;
+            this.row = 0;
+        }
+    }
+
+    private static final Queue<Upload> decoded = new ConcurrentLinkedQueue<>();
+    private static ExecutorService decoders = null;
+
+    // Render thread state: the upload in progress & the pixel buffer uploads are staged in
+    private static Upload current = null;
+    private static GLVertexBuffer pbo = null;
+    private static int pboCapacity = 0;
+    private static int lastFrameUploaded = 0;
+
+    private TextureLoader()
+    {
+    }
+
+    /**
+     * Method to queue an image file for decoding on a background thread
+     *
+     * @param file the image file to load
+     * @return a future completed on the render thread once the texture has been uploaded
+     */
+    static synchronized CompletableFuture<Texture> load(String file)
+    {
+        if(decoders == null)
+        {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            decoders = Executors.newFixedThreadPool(threads, r ->
+            {
+                Thread thread = new Thread(r, "SGL Texture Loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        CompletableFuture<Texture> future = new CompletableFuture<>();
+        decoders.execute(() -> decode(file, future));
+        return future;
+    }
+
+    /**
+     * Method to upload decoded images within the per frame byte budget & complete the futures of finished textures.
+     * Called by the Display once per frame.
+     */
+    public static void update()
+    {
+        lastFrameUploaded = 0;
+        if(current == null && decoded.isEmpty())
+            return;
+
+        int budget = Math.max(1, Display.getTextureUploadBudget());
+        boolean orphaned = false;
+        int offset = 0;
+        while(offset < budget)
+        {
+            if(current == null)
+            {
+                current = decoded.poll();
+                if(current == null)
+                    break;
+
+                // Texture storage is allocated without a source, which must not be read from the pixel buffer
+                if(orphaned)
+                    pbo.unbind();
+                allocate(current);
+                if(orphaned)
+                    pbo.bind();
+            }
+
+            // Upload as many rows as fit into the budget (a row is always uploaded at the start of the frame)
+            int rowSize = current.width * current.components;
+            int rows = Math.min(current.height - current.row, (budget - offset) / rowSize);
+            if(rows <= 0)
+            {
+                if(offset > 0)
+                    break;
+                rows = 1;
+            }
+            int size = rows * rowSize;
+
+            // Orphan the pixel buffer once per frame, the ranges written during a frame never overlap
+            if(!orphaned)
+            {
+                if(pbo == null)
+                    pbo = new GLVertexBuffer(GL_PIXEL_UNPACK_BUFFER);
+                pbo.bind();
+                pboCapacity = Math.max(budget, size);
+                pbo.uploadBufferData(pboCapacity, GL_STREAM_DRAW);
+                orphaned = true;
+            }
+            if(offset + size > pboCapacity)
+                break;
+
+            uploadRows(current, rows, offset);
+            offset += size;
+
+            if(current.row == current.height)
+            {
+                finish(current);
+                current = null;
+            }
+        }
+
+        if(orphaned)
+            pbo.unbind();
+        lastFrameUploaded = offset;
+    }
+
+    /**
+     * Method to get the number of texture bytes uploaded during the last frame (for profiling)
+     *
+     * @return the number of bytes uploaded by update during the last frame
+     */
+    public static int getUploadedBytes()
+    {
+        return lastFrameUploaded;
+    }
+
+    /**
+     * Method to check if there are any textures waiting to be uploaded
+     *
+     * @return true if a decoded texture hasn't been fully uploaded yet, false otherwise
+     */
+    public static boolean isUploading()
+    {
+        return current != null || !decoded.isEmpty();
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    private static void decode(String file, CompletableFuture<Texture> future)
+    {
+        try(MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer wb = stack.mallocInt(1);
+            IntBuffer hb = stack.mallocInt(1);
+            IntBuffer cb = stack.mallocInt(1);
+
+            // Grey & grey-alpha images are expanded to RGBA, so every texture is either RGB or RGBA
+            int components = 4;
+            if(STBImage.stbi_info(file, wb, hb, cb) && cb.get(0) == 3)
+                components = 3;
+
+            ByteBuffer data = STBImage.stbi_load(file, wb, hb, cb, components);
+            if(data == null)
+            {
+                logger.error("Failed to load texture: " + file + " (" + STBImage.stbi_failure_reason() + ")");
+                future.completeExceptionally(new IOException("Failed to load texture: " + file));
+                return;
+            }
+
+            decoded.add(new Upload(future, file, data, wb.get(0), hb.get(0), components));
+        }
+        catch(RuntimeException e)
+        {
+            // The executor swallows exceptions, so the future has to be failed here or it would never complete
+            logger.error("Failed to load texture: " + file + " (" + e + ")");
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static void allocate(Upload upload)
+    {
+        upload.tex = new GLTexture();
+        upload.tex.bind();
+        upload.tex.uploadTextureData(getInternalFormat(upload.components), upload.width, upload.height, getFormat(upload.components), GL_UNSIGNED_BYTE, null);
+        upload.tex.unbind();
+    }
+
+    private static void uploadRows(Upload upload, int rows, int offset)
+    {
+        int rowSize = upload.width * upload.components;
+        int size = rows * rowSize;
+
+        ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, offset, size, GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+        if(mapped == null)
+        {
+            logger.error("Failed to map texture upload buffer!");
+            return;
+        }
+        MemoryUtil.memCopy(MemoryUtil.memAddress(upload.data) + (long) upload.row * rowSize, MemoryUtil.memAddress(mapped), size);
+        glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+
+        upload.tex.bind();
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, upload.row, upload.width, rows, getFormat(upload.components), GL_UNSIGNED_BYTE, offset);
+        upload.tex.unbind();
+
+        upload.row += rows;
+    }
+
+    private static void finish(Upload upload)
+    {
+        STBImage.stbi_image_free(upload.data);
+
+        upload.tex.bind();
+        Texture.setParameters(upload.tex);
+        upload.tex.unbind();
+
+        Texture texture = new Texture(upload.tex, upload.width, upload.height);
+        texture.residency = TextureResidency.register(upload.tex, upload.file, (long) upload.width * upload.height * upload.components * 4 / 3);
+        upload.future.complete(texture);
+    }
+
+    private static int getInternalFormat(int components)
+    {
+        return components == 4 ? GL_RGBA8 : GL_RGB;
+    }
+
+    private static int getFormat(int components)
+    {
+        return components == 4 ? GL_RGBA : GL_RGB;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.graphics.gl.GLTexture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the estimated video memory used by every texture & the last frame each one was drawn in. When the resident
+ * textures exceed Display.getTextureBudget(), update evicts the least recently used textures that were loaded from a
+ * file (textures created from pixel data, render textures & atlas pages are never evicted). Evicted textures keep
+ * their Texture & GLTexture objects, so regions of them stay valid, and are reloaded from their file (optionally
+ * skipping the largest mip levels, see Display.getTextureReloadLevel) the next time a renderer draws them. Textures
+ * drawn during the current frame are never evicted. Must only be used from the render thread.
+ */
+public final class TextureResidency
+{
+    /**
+     * Residency state of a single GL texture (shared by every Texture that wraps it)
+     */
+    static final class Entry
+    {
+        private final GLTexture tex;
+        private final String file;
+        private long bytes;
+        private long lastUsed;
+        private boolean isResident;
+
+        private Entry(GLTexture tex, String file, long bytes)
+        {
+            this.tex = tex;
+            this.file = file;
+            this.bytes = bytes;
+            this.lastUsed = frame;
+            this.isResident = true;
+        }
+    }
+
+    private static final List<Entry> entries = new ArrayList<>();
+    private static long frame = 0;
+    private static long residentBytes = 0;
+
+    // Total evictions & reloads (for profiling)
+    private static int evictions = 0;
+    private static int reloads = 0;
+
+    private TextureResidency()
+    {
+    }
+
+    /**
+     * Method to start tracking a texture
+     *
+     * @param tex the GL texture
+     * @param file the file the texture can be reloaded from (null if the texture can't be evicted)
+     * @param bytes the estimated size of the texture in video memory
+     * @return the texture's residency entry
+     */
+    static Entry register(GLTexture tex, String file, long bytes)
+    {
+        Entry entry = new Entry(tex, file, bytes);
+        entries.add(entry);
+        residentBytes += bytes;
+        return entry;
+    }
+
+    static void unregister(Entry entry)
+    {
+        if(entry == null || !entries.remove(entry))
+            return;
+        if(entry.isResident)
+            residentBytes -= entry.bytes;
+    }
+
+    /**
+     * Method to mark a texture as used in the current frame, reloading it first if it has been evicted. Called by the
+     * renderers before they bind a texture.
+     */
+    static void touch(Entry entry)
+    {
+        entry.lastUsed = frame;
+        if(!entry.isResident)
+        {
+            entry.bytes = Texture.reload(entry.tex, entry.file, Display.getTextureReloadLevel());
+            entry.isResident = true;
+            residentBytes += entry.bytes;
+            reloads++;
+        }
+    }
+
+    /**
+     * Method to evict the least recently used textures if the budget is exceeded & start the next frame. Called by
+     * the Display once per frame.
+     */
+    public static void update()
+    {
+        long budget = Display.getTextureBudget();
+        if(budget > 0 && residentBytes > budget)
+            evict(budget);
+        frame++;
+    }
+
+    /**
+     * Method to get the estimated video memory used by resident textures
+     *
+     * @return the estimated size of all resident textures in bytes
+     */
+    public static long getResidentBytes()
+    {
+        return residentBytes;
+    }
+
+    public static int getEvictions()
+    {
+        return evictions;
+    }
+
+    public static int getReloads()
+    {
+        return reloads;
+    }
+
+    private static void evict(long budget)
+    {
+        List<Entry> candidates = new ArrayList<>();
+        for(Entry entry : entries)
+        {
+            if(entry.isResident && entry.file != null && entry.lastUsed < frame)
+                candidates.add(entry);
+        }
+        candidates.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+
+        for(Entry entry : candidates)
+        {
+            if(residentBytes <= budget)
+                break;
+            entry.tex.destroy();
+            entry.isResident = false;
+            residentBytes -= entry.bytes;
+            evictions++;
+        }
+    }
+}
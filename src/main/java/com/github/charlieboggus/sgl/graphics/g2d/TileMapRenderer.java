@@ -0,0 +1,406 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.graphics.gl.GLShaderProgram;
+import com.github.charlieboggus.sgl.graphics.gl.GLState;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexArray;
+import com.github.charlieboggus.sgl.graphics.gl.GLVertexBuffer;
+import com.github.charlieboggus.sgl.utility.Color;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.joml.Matrix4f;
+import org.joml.Rectanglef;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+
+/**
+ * Renderer for a single layer of a tile map. The map is split into square chunks of tiles, each stored in its own
+ * static vertex buffer that is only rebuilt when one of its tiles changes. When drawing, only the chunks that intersect
+ * the area visible through the camera are drawn, with one draw call per chunk. Every tile must be a region of the
+ * tileset texture the renderer was created with.
+ */
+public class TileMapRenderer
+{
+    private static final Logger logger = Logger.getLogger(TileMapRenderer.class);
+
+    private static final int DEFAULT_CHUNK_SIZE = 32;
+
+    // Vertex: position (2 floats), color (4 normalized ubytes), texture coordinates (2 normalized ushorts), texture
+    // slot & flags (1 ubyte + 3 bytes padding) = 20 bytes. This is SpriteBatch's compact format, so the renderer shaders
+    // can be reused.
+    private static final int VERTEX_SIZE = 2 * Float.BYTES + 4 + 2 * Short.BYTES + 4;
+
+    private static class Chunk
+    {
+        GLVertexArray vao;
+        GLVertexBuffer vbo;
+        int quadsCount;
+        boolean dirty = true;
+    }
+
+    private final Matrix4f projection = new Matrix4f();
+    private final Matrix4f view = new Matrix4f();
+    private final Rectanglef screenBounds = new Rectanglef();
+
+    // Scratch storage for the world space corners of the tile being built
+    private final float[] quad = new float[8];
+
+    private final GLShaderProgram program;
+    private GLVertexBuffer ibo;
+
+    private final Texture tileset;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int chunkSize;
+    private final int chunksX;
+    private final int chunksY;
+
+    // Tiles stored row by row (null for empty tiles)
+    private final Texture[] tiles;
+    private final Chunk[] chunks;
+    private final ByteBuffer vertices;
+
+    private float x;
+    private float y;
+    private Color color;
+    private Camera camera;
+
+    private int calls;
+    private int rebuilds;
+
+    public TileMapRenderer(Texture tileset, int width, int height, int tileWidth, int tileHeight)
+    {
+        this(tileset, width, height, tileWidth, tileHeight, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new TileMapRenderer for an empty tile map
+     *
+     * @param tileset the texture every tile is a region of
+     * @param width the width of the map (in tiles)
+     * @param height the height of the map (in tiles)
+     * @param tileWidth the width of a tile (in pixels)
+     * @param tileHeight the height of a tile (in pixels)
+     * @param chunkSize the width & height of a chunk (in tiles)
+     */
+    public TileMapRenderer(Texture tileset, int width, int height, int tileWidth, int tileHeight, int chunkSize)
+    {
+        this.tileset = tileset;
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunksX = (width + this.chunkSize - 1) / this.chunkSize;
+        this.chunksY = (height + this.chunkSize - 1) / this.chunkSize;
+
+        this.tiles = new Texture[width * height];
+        this.chunks = new Chunk[this.chunksX * this.chunksY];
+        this.vertices = BufferUtils.createByteBuffer(this.chunkSize * this.chunkSize * 4 * VERTEX_SIZE);
+
+        this.x = 0.0f;
+        this.y = 0.0f;
+        this.color = Color.White;
+        this.camera = null;
+        this.calls = 0;
+        this.rebuilds = 0;
+
+        // Create the Shader Program
+        this.program = new GLShaderProgram();
+        this.program.loadShaders("shaders/renderer.vs", "shaders/renderer.fs");
+        this.program.link();
+        this.program.validate();
+
+        // The index buffer shared by every chunk is created along with the first chunk's vertex array
+        this.ibo = null;
+    }
+
+    public void dispose()
+    {
+        for(Chunk chunk : this.chunks)
+        {
+            if(chunk != null && chunk.vao != null)
+            {
+                chunk.vbo.destroy();
+                chunk.vao.destroy();
+            }
+        }
+        if(this.ibo != null)
+            this.ibo.destroy();
+        this.program.destroy();
+    }
+
+    public void setCamera(Camera camera)
+    {
+        this.camera = camera;
+    }
+
+    /**
+     * Method to set the world position of the upper left corner of the map
+     *
+     * @param x x-position of the map
+     * @param y y-position of the map
+     */
+    public void setPosition(float x, float y)
+    {
+        if(this.x != x || this.y != y)
+            this.invalidateAll();
+        this.x = x;
+        this.y = y;
+    }
+
+    public void setColor(Color c)
+    {
+        if(!this.color.equals(c))
+            this.invalidateAll();
+        this.color = c;
+    }
+
+    public int getWidth()
+    {
+        return this.width;
+    }
+
+    public int getHeight()
+    {
+        return this.height;
+    }
+
+    public int getChunkSize()
+    {
+        return this.chunkSize;
+    }
+
+    /**
+     * Method to get the number of draw calls (i.e. visible chunks) made by the last call to draw
+     */
+    public int getRenderCalls()
+    {
+        return this.calls;
+    }
+
+    /**
+     * Method to get the total number of chunk rebuilds since the renderer was created
+     */
+    public int getChunkRebuilds()
+    {
+        return this.rebuilds;
+    }
+
+    public Texture getTile(int tx, int ty)
+    {
+        if(tx < 0 || ty < 0 || tx >= this.width || ty >= this.height)
+            return null;
+        return this.tiles[ty * this.width + tx];
+    }
+
+    /**
+     * Method to set a tile of the map. The chunk containing the tile is rebuilt the next time it is drawn.
+     *
+     * @param tx x-position of the tile (in tiles)
+     * @param ty y-position of the tile (in tiles)
+     * @param tile region of the tileset to draw the tile with, or null to clear the tile
+     */
+    public void setTile(int tx, int ty, Texture tile)
+    {
+        if(tx < 0 || ty < 0 || tx >= this.width || ty >= this.height)
+        {
+            logger.error("Tile (" + tx + ", " + ty + ") is outside of the tile map!");
+            return;
+        }
+        if(tile != null && tile.getGLTexture() != this.tileset.getGLTexture())
+        {
+            logger.error("Tile (" + tx + ", " + ty + ") is not a region of the tileset!");
+            return;
+        }
+
+        int i = ty * this.width + tx;
+        if(this.tiles[i] == tile)
+            return;
+
+        this.tiles[i] = tile;
+        Chunk chunk = this.chunks[(ty / this.chunkSize) * this.chunksX + tx / this.chunkSize];
+        if(chunk != null)
+            chunk.dirty = true;
+    }
+
+    /**
+     * Method for drawing the chunks of the map that are visible through the camera. Must not be called between the
+     * begin and end of a SpriteBatch or ShapeBatch.
+     */
+    public void draw()
+    {
+        this.calls = 0;
+
+        this.projection.identity();
+        this.projection.ortho2D(0.0f, Display.getViewportWidth(), Display.getViewportHeight(), 0.0f);
+        this.view.identity();
+        if(this.camera != null)
+            this.view.set(this.camera.getViewMatrix());
+
+        // Find the range of chunks that intersect the visible area of the world
+        Rectanglef bounds = this.getVisibleBounds();
+        float chunkWidth = (float) this.chunkSize * this.tileWidth;
+        float chunkHeight = (float) this.chunkSize * this.tileHeight;
+        int cx0 = Math.max(0, (int) Math.floor((bounds.minX - this.x) / chunkWidth));
+        int cy0 = Math.max(0, (int) Math.floor((bounds.minY - this.y) / chunkHeight));
+        int cx1 = Math.min(this.chunksX - 1, (int) Math.floor((bounds.maxX - this.x) / chunkWidth));
+        int cy1 = Math.min(this.chunksY - 1, (int) Math.floor((bounds.maxY - this.y) / chunkHeight));
+        if(cx0 > cx1 || cy0 > cy1)
+            return;
+
+        // Bind the shader program & set global uniforms
+        this.program.bind();
+        this.program.setUniform1i("images[0]", 0);
+        this.program.setUniformMatrix4fv("projection", this.projection);
+        this.program.setUniformMatrix4fv("view", this.view);
+
+        // Set the OpenGL state
+        GLState.enable(GL_BLEND);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        if(Display.getAntialiasMode().isMultisampled())
+            GLState.enable(GL_MULTISAMPLE);
+
+        this.tileset.touch();
+        this.tileset.bind(0);
+        for(int cy = cy0; cy <= cy1; cy++)
+        {
+            for(int cx = cx0; cx <= cx1; cx++)
+            {
+                Chunk chunk = this.getChunk(cx, cy);
+                if(chunk.quadsCount == 0)
+                    continue;
+
+                chunk.vao.bind();
+                glDrawElements(GL_TRIANGLES, chunk.quadsCount * 6, GL_UNSIGNED_INT, 0);
+                this.calls++;
+            }
+        }
+        GLState.bindVertexArray(0);
+        this.program.unbind();
+    }
+
+    // Utility Methods -------------------------------------------------------------------------------------------------
+
+    /**
+     * Method for getting a chunk, creating or rebuilding its vertex buffer first if needed
+     */
+    private Chunk getChunk(int cx, int cy)
+    {
+        Chunk chunk = this.chunks[cy * this.chunksX + cx];
+        if(chunk == null)
+        {
+            chunk = new Chunk();
+            this.chunks[cy * this.chunksX + cx] = chunk;
+        }
+
+        if(chunk.dirty)
+        {
+            this.buildChunk(chunk, cx, cy);
+            chunk.dirty = false;
+            this.rebuilds++;
+        }
+
+        return chunk;
+    }
+
+    private void buildChunk(Chunk chunk, int cx, int cy)
+    {
+        int packed = this.color.toNativeRGBA8888();
+        float[] q = this.quad;
+
+        this.vertices.clear();
+        chunk.quadsCount = 0;
+        int tx0 = cx * this.chunkSize;
+        int ty0 = cy * this.chunkSize;
+        int tx1 = Math.min(this.width, tx0 + this.chunkSize);
+        int ty1 = Math.min(this.height, ty0 + this.chunkSize);
+        for(int ty = ty0; ty < ty1; ty++)
+        {
+            for(int tx = tx0; tx < tx1; tx++)
+            {
+                Texture tile = this.tiles[ty * this.width + tx];
+                if(tile == null)
+                    continue;
+
+                QuadTransform.transform(q, this.x + tx * this.tileWidth, this.y + ty * this.tileHeight, this.tileWidth, this.tileHeight, 0.0f, 1.0f);
+                this.putVertex(q[0], q[1], packed, tile.getS0(), tile.getT0());  // Bottom Left
+                this.putVertex(q[2], q[3], packed, tile.getS1(), tile.getT0());  // Bottom Right
+                this.putVertex(q[4], q[5], packed, tile.getS1(), tile.getT1());  // Top Right
+                this.putVertex(q[6], q[7], packed, tile.getS0(), tile.getT1());  // Top Left
+                chunk.quadsCount++;
+            }
+        }
+        this.vertices.flip();
+
+        if(chunk.vao == null)
+        {
+            chunk.vao = new GLVertexArray();
+            chunk.vao.bind();
+                chunk.vbo = new GLVertexBuffer();
+                chunk.vbo.bind();
+
+                // Position, Color, Texture Coordinates & Texture Slot Attributes
+                chunk.vao.setVertexAttributePointer(0, 2, GL_FLOAT, VERTEX_SIZE, 0);
+                chunk.vao.enableVertexAttribute(0);
+                chunk.vao.setVertexAttributePointer(1, 4, GL_UNSIGNED_BYTE, true, VERTEX_SIZE, 2 * Float.BYTES);
+                chunk.vao.enableVertexAttribute(1);
+                chunk.vao.setVertexAttributePointer(2, 2, GL_UNSIGNED_SHORT, true, VERTEX_SIZE, 2 * Float.BYTES + 4);
+                chunk.vao.enableVertexAttribute(2);
+                chunk.vao.setVertexAttributePointer(3, 1, GL_UNSIGNED_BYTE, VERTEX_SIZE, 2 * Float.BYTES + 8);
+                chunk.vao.enableVertexAttribute(3);
+
+                // Quad Indices (shared by every chunk)
+                if(this.ibo == null)
+                    this.ibo = GLVertexBuffer.createQuadIndexBuffer(this.chunkSize * this.chunkSize);
+                else
+                    this.ibo.bind();
+            chunk.vao.unbind();
+            this.ibo.unbind();
+        }
+        else
+            chunk.vbo.bind();
+
+        chunk.vbo.uploadBufferData(this.vertices, GL_STATIC_DRAW);
+        chunk.vbo.unbind();
+    }
+
+    private void putVertex(float x, float y, int packed, float s, float t)
+    {
+        this.vertices.putFloat(x).putFloat(y);
+        this.vertices.putInt(packed);
+        this.vertices.putShort((short) (s * 65535.0f + 0.5f)).putShort((short) (t * 65535.0f + 0.5f));
+        this.vertices.putInt(0);
+    }
+
+    /**
+     * Method for getting the area of the world visible through the camera (or the viewport if there is no camera)
+     */
+    private Rectanglef getVisibleBounds()
+    {
+        if(this.camera != null)
+            return this.camera.getVisibleBounds();
+
+        this.screenBounds.minX = 0.0f;
+        this.screenBounds.minY = 0.0f;
+        this.screenBounds.maxX = Display.getViewportWidth();
+        this.screenBounds.maxY = Display.getViewportHeight();
+        return this.screenBounds;
+    }
+
+    private void invalidateAll()
+    {
+        for(Chunk chunk : this.chunks)
+        {
+            if(chunk != null)
+                chunk.dirty = true;
+        }
+    }
+}
@@ -9,8 +9,6 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
 
 public class TrueTypeFont
 {
@@ -32,7 +30,9 @@ public class TrueTypeFont
         }
     }
 
-    private final Map< Character, Glyph > glyphs;
+    // Glyphs are only generated for the characters 32 - 255, so they're indexed directly by character to avoid boxing
+    // the character on every lookup
+    private final Glyph[] glyphs;
     private Texture fontTexture;
     private int fontTextureWidth;
     private int fontTextureHeight;
@@ -40,19 +40,19 @@ public class TrueTypeFont
 
     public TrueTypeFont()
     {
-        this.glyphs = new HashMap<>();
+        this.glyphs = new Glyph[256];
         this.fontTexture = this.createFontTexture(new Font(Font.MONOSPACED, Font.PLAIN, 16));
     }
 
     public TrueTypeFont(int size)
     {
-        this.glyphs = new HashMap<>();
+        this.glyphs = new Glyph[256];
         this.fontTexture = this.createFontTexture(new Font(Font.MONOSPACED, Font.PLAIN, size));
     }
 
     public TrueTypeFont(String path)
     {
-        this.glyphs = new HashMap<>();
+        this.glyphs = new Glyph[256];
         try {
             this.fontTexture = this.createFontTexture(Font.createFont(Font.TRUETYPE_FONT, FileIO.getInputStream(path)).deriveFont(Font.PLAIN, 16));
         }
@@ -63,7 +63,7 @@ public class TrueTypeFont
 
     public TrueTypeFont(String path, int size)
     {
-        this.glyphs = new HashMap<>();
+        this.glyphs = new Glyph[256];
         try {
             this.fontTexture = this.createFontTexture(Font.createFont(Font.TRUETYPE_FONT, FileIO.getInputStream(path)).deriveFont(Font.PLAIN, size));
         }
@@ -94,7 +94,7 @@ public class TrueTypeFont
             if(c == '\r')
                 continue;
 
-            Glyph g = this.glyphs.get(c);
+            Glyph g = this.getGlyph(c);
             lineWidth += g.w;
         }
 
@@ -120,7 +120,7 @@ public class TrueTypeFont
             if(c == '\r')
                 continue;
 
-            Glyph g = this.glyphs.get(c);
+            Glyph g = this.getGlyph(c);
             lineHeight = Math.max(lineHeight, (int) g.h);
         }
 
@@ -141,35 +141,47 @@ public class TrueTypeFont
 
     float getGlyphS0(char c)
     {
-        Glyph g = this.glyphs.get(c);
+        return this.getGlyphS0(this.getGlyph(c));
+    }
 
+    float getGlyphS0(Glyph g)
+    {
         return g.x / this.fontTextureWidth;
     }
 
     float getGlyphT0(char c)
     {
-        Glyph g = this.glyphs.get(c);
+        return this.getGlyphT0(this.getGlyph(c));
+    }
 
+    float getGlyphT0(Glyph g)
+    {
         return g.y / this.fontTextureHeight;
     }
 
     float getGlyphS1(char c)
     {
-        Glyph g = this.glyphs.get(c);
+        return this.getGlyphS1(this.getGlyph(c));
+    }
 
+    float getGlyphS1(Glyph g)
+    {
         return (g.x + g.w) / this.fontTextureWidth;
     }
 
     float getGlyphT1(char c)
     {
-        Glyph g = this.glyphs.get(c);
+        return this.getGlyphT1(this.getGlyph(c));
+    }
 
+    float getGlyphT1(Glyph g)
+    {
         return (g.y + g.h) / this.fontTextureHeight;
     }
 
     Glyph getGlyph(char c)
     {
-        return this.glyphs.get(c);
+        return c < this.glyphs.length ? this.glyphs[c] : null;
     }
 
     private Texture createFontTexture(Font font)
@@ -211,7 +223,7 @@ public class TrueTypeFont
             Glyph gl = new Glyph(charW, charH, x, image.getHeight() - charH, 0.0f);
             g.drawImage(ch, x, 0, null);
             x += gl.w;
-            this.glyphs.put(c, gl);
+            this.glyphs[c] = gl;
         }
 
         int width = image.getWidth();
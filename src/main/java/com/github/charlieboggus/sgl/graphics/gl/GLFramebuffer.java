@@ -25,6 +25,7 @@ public class GLFramebuffer
     public void destroy()
     {
         glDeleteFramebuffers(this.id);
+        GLState.framebufferDeleted(this.id);
     }
 
     public void bind()
@@ -34,7 +35,7 @@ public class GLFramebuffer
 
     public void bind(int target)
     {
-        glBindFramebuffer(target, this.id);
+        GLState.bindFramebuffer(target, this.id);
         this.bound = true;
     }
 
@@ -45,7 +46,7 @@ public class GLFramebuffer
 
     public void unbind(int target)
     {
-        glBindFramebuffer(target, 0);
+        GLState.bindFramebuffer(target, 0);
         this.bound = false;
     }
 
@@ -59,9 +60,20 @@ public class GLFramebuffer
     }
 
     public void createColorAttachment(GLTexture texture)
+    {
+        this.createColorAttachment(texture, 0);
+    }
+
+    /**
+     * Method to attach a texture to one of the framebuffer's color attachment points
+     *
+     * @param texture the texture to attach (must already have storage allocated)
+     * @param index the index of the color attachment (0 for GL_COLOR_ATTACHMENT0)
+     */
+    public void createColorAttachment(GLTexture texture, int index)
     {
         this.bind();
-        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture.getID(), 0);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0 + index, GL_TEXTURE_2D, texture.getID(), 0);
         if(glCheckFramebufferStatus(GL_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE)
             logger.error("Failed to create GLFramebuffer Color Attachment!");
         this.unbind();
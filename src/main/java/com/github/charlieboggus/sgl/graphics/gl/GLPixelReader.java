@@ -0,0 +1,267 @@
+package com.github.charlieboggus.sgl.graphics.gl;
+
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.GL_STREAM_READ;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL30.GL_MAP_READ_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Asynchronous framebuffer reader. Pixels are read into a ring of pixel buffer objects, each guarded by a fence, so
+ * glReadPixels returns without waiting for the GPU. Once a fence has been passed (checked by update, usually a frame
+ * or two later) the buffer is mapped and handed to a handler on a background thread, and unmapped when the handler is
+ * done. Handlers are called one at a time, in the order the reads were made. Only the ring's buffers are ever waited
+ * on: if every buffer is still in use when a new read is made, the oldest one is finished first.
+ */
+public class GLPixelReader
+{
+    private static final Logger logger = Logger.getLogger(GLPixelReader.class);
+
+    /**
+     * Handler for pixels read by a GLPixelReader. Called on the reader's background thread with tightly packed RGBA
+     * pixels, bottom row first. The buffer is only valid until handle returns.
+     */
+    public interface Handler
+    {
+        void handle(ByteBuffer pixels, int width, int height);
+    }
+
+    // States of a buffer in the ring
+    private static final int FREE = 0;
+    private static final int READING = 1;
+    private static final int HANDLING = 2;
+
+    private final GLVertexBuffer[] buffers;
+    private final int[] capacities;
+    private final int[] states;
+    private final long[] fences;
+    private final int[] widths;
+    private final int[] heights;
+    private final Handler[] handlers;
+    private final Future<?>[] tasks;
+    private int next;
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new GLPixelReader
+     *
+     * @param count the number of pixel buffers in the ring (the number of reads that can be in flight)
+     * @param threadName the name of the thread handlers are called on
+     */
+    public GLPixelReader(int count, String threadName)
+    {
+        count = Math.max(1, count);
+        this.buffers = new GLVertexBuffer[count];
+        this.capacities = new int[count];
+        this.states = new int[count];
+        this.fences = new long[count];
+        this.widths = new int[count];
+        this.heights = new int[count];
+        this.handlers = new Handler[count];
+        this.tasks = new Future<?>[count];
+        this.next = 0;
+        for(int i = 0; i < count; i++)
+            this.buffers[i] = new GLVertexBuffer(GL_PIXEL_PACK_BUFFER);
+
+        this.executor = Executors.newSingleThreadExecutor(r ->
+        {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Method to finish every read in flight and destroy the reader
+     */
+    public void destroy()
+    {
+        for(int i = 0; i < this.buffers.length; i++)
+            this.finish((this.next + i) % this.buffers.length);
+        this.executor.shutdown();
+        for(GLVertexBuffer buffer : this.buffers)
+            buffer.destroy();
+    }
+
+    /**
+     * Method to start reading a rectangle of the current read framebuffer. Returns without waiting for the GPU unless
+     * every buffer in the ring is still in use.
+     *
+     * @param x x-position of the lower left corner of the rectangle
+     * @param y y-position of the lower left corner of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @param handler the handler to call with the pixels once they've been read
+     */
+    public void read(int x, int y, int width, int height, Handler handler)
+    {
+        int slot = this.next;
+        if(this.states[slot] != FREE)
+            this.finish(slot);
+
+        int size = width * height * 4;
+        GLVertexBuffer buffer = this.buffers[slot];
+        buffer.bind();
+        if(this.capacities[slot] < size)
+        {
+            buffer.uploadBufferData(size, GL_STREAM_READ);
+            this.capacities[slot] = size;
+        }
+        glPixelStorei(GL_PACK_ALIGNMENT, 4);
+        glReadPixels(x, y, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0L);
+        buffer.unbind();
+
+        this.fences[slot] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        this.widths[slot] = width;
+        this.heights[slot] = height;
+        this.handlers[slot] = handler;
+        this.states[slot] = READING;
+        this.next = (slot + 1) % this.buffers.length;
+    }
+
+    /**
+     * Method to hand finished reads to the background thread & release buffers whose handlers are done, without
+     * waiting on either. Should be called once per frame.
+     */
+    public void update()
+    {
+        boolean dispatching = true;
+        for(int i = 0; i < this.buffers.length; i++)
+        {
+            int slot = (this.next + i) % this.buffers.length;
+            if(this.states[slot] == READING && dispatching)
+            {
+                // Stop dispatching at the first read the GPU hasn't finished, so handlers are called in order (finished
+                // handlers after it are still released)
+                int status = glClientWaitSync(this.fences[slot], 0, 0);
+                if(status != GL_ALREADY_SIGNALED && status != GL_CONDITION_SATISFIED)
+                    dispatching = false;
+                else
+                    this.dispatch(slot);
+            }
+            else if(this.states[slot] == HANDLING && this.tasks[slot].isDone())
+                this.release(slot);
+        }
+    }
+
+    /**
+     * Method to check if a read can be started without waiting for an earlier one to finish
+     *
+     * @return true if the next buffer in the ring is free, false otherwise
+     */
+    public boolean hasFreeBuffer()
+    {
+        return this.states[this.next] == FREE;
+    }
+
+    /**
+     * Method to check if there are any reads in flight
+     *
+     * @return true if any read hasn't been handled yet, false otherwise
+     */
+    public boolean isBusy()
+    {
+        for(int state : this.states)
+        {
+            if(state != FREE)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to wait for a buffer's read & handler to finish
+     */
+    private void finish(int slot)
+    {
+        if(this.states[slot] == READING)
+        {
+            // Oldest reads have to be dispatched first to keep the handlers in order
+            for(int i = 0; i < this.buffers.length; i++)
+            {
+                int s = (this.next + i) % this.buffers.length;
+                if(this.states[s] == READING)
+                {
+                    int status;
+                    do
+                        status = glClientWaitSync(this.fences[s], GL_SYNC_FLUSH_COMMANDS_BIT, 1_000_000L);
+                    while(status == GL_TIMEOUT_EXPIRED);
+                    this.dispatch(s);
+                }
+                if(s == slot)
+                    break;
+            }
+        }
+
+        if(this.states[slot] == HANDLING)
+        {
+            try
+            {
+                this.tasks[slot].get();
+            }
+            catch(InterruptedException | ExecutionException e)
+            {
+                logger.error("Interrupted while waiting for pixel handler!");
+            }
+            this.release(slot);
+        }
+    }
+
+    private void dispatch(int slot)
+    {
+        glDeleteSync(this.fences[slot]);
+        this.fences[slot] = 0;
+
+        int width = this.widths[slot];
+        int height = this.heights[slot];
+        Handler handler = this.handlers[slot];
+
+        GLVertexBuffer buffer = this.buffers[slot];
+        buffer.bind();
+        ByteBuffer pixels = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, width * height * 4, GL_MAP_READ_BIT);
+        buffer.unbind();
+        if(pixels == null)
+        {
+            logger.error("Failed to map pixel buffer!");
+            this.states[slot] = FREE;
+            this.handlers[slot] = null;
+            return;
+        }
+
+        this.states[slot] = HANDLING;
+        this.tasks[slot] = this.executor.submit(() ->
+        {
+            try
+            {
+                handler.handle(pixels, width, height);
+            }
+            catch(RuntimeException e)
+            {
+                logger.error("Pixel handler failed: " + e);
+            }
+        });
+    }
+
+    private void release(int slot)
+    {
+        GLVertexBuffer buffer = this.buffers[slot];
+        buffer.bind();
+        glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+        buffer.unbind();
+
+        this.states[slot] = FREE;
+        this.handlers[slot] = null;
+        this.tasks[slot] = null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.charlieboggus.sgl.graphics.gl;
+
+import com.github.charlieboggus.sgl.core.Display;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * On disk cache of linked program binaries. Binaries are stored in the shader cache directory under a SHA-256 hash of
+ * the shader sources and the GL vendor, renderer & version strings, so a driver update never loads a stale binary.
+ * Binaries the driver rejects anyway are recompiled from source and overwritten by the caller.
+ */
+final class GLProgramCache
+{
+    private static final Logger logger = Logger.getLogger(GLProgramCache.class);
+
+    // File header: magic, binary format & binary length
+    private static final int MAGIC = 0x53474C42;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private GLProgramCache()
+    {
+    }
+
+    /**
+     * Method to check whether program binaries can be cached. Requires a cache directory to be configured and a driver
+     * that supports at least one program binary format.
+     *
+     * @return true if program binaries can be cached, false otherwise
+     */
+    static boolean isSupported()
+    {
+        GLCapabilities caps = GL.getCapabilities();
+        if(Display.getShaderCacheDirectory() == null || !(caps.OpenGL41 || caps.GL_ARB_get_program_binary))
+            return false;
+        return glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+    }
+
+    /**
+     * Method to get the cache key of a program
+     *
+     * @param vertexSrc the vertex shader source
+     * @param fragmentSrc the fragment shader source
+     * @return the cache key of the program, or null if the key couldn't be computed
+     */
+    static String getKey(String vertexSrc, String fragmentSrc)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String[] parts = { vertexSrc, fragmentSrc, glGetString(GL_VENDOR), glGetString(GL_RENDERER), glGetString(GL_VERSION) };
+            for(String part : parts)
+            {
+                if(part != null)
+                    digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            StringBuilder key = new StringBuilder();
+            for(byte b : digest.digest())
+                key.append(String.format("%02x", b));
+            return key.toString();
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            logger.warning("Failed to hash shader sources, program binaries won't be cached!");
+            return null;
+        }
+    }
+
+    /**
+     * Method to load a cached binary into a program
+     *
+     * @param program the program to load the binary into
+     * @param key the cache key of the program
+     * @return true if a cached binary was found and accepted by the driver, false otherwise
+     */
+    static boolean load(int program, String key)
+    {
+        Path file = getFile(key);
+        if(!Files.isReadable(file))
+            return false;
+
+        try
+        {
+            byte[] bytes = Files.readAllBytes(file);
+            ByteBuffer buffer = BufferUtils.createByteBuffer(bytes.length);
+            buffer.put(bytes).flip();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if(bytes.length < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(8) != bytes.length - HEADER_SIZE)
+            {
+                logger.warning("Ignoring corrupt program binary " + file);
+                return false;
+            }
+
+            int format = buffer.getInt(4);
+            buffer.position(HEADER_SIZE);
+            glProgramBinary(program, format, buffer);
+            return glGetProgrami(program, GL_LINK_STATUS) != 0;
+        }
+        catch(IOException e)
+        {
+            logger.warning("Failed to read program binary " + file);
+            return false;
+        }
+    }
+
+    /**
+     * Method to store the binary of a linked program. The program must have been linked with
+     * GL_PROGRAM_BINARY_RETRIEVABLE_HINT set.
+     *
+     * @param program the linked program
+     * @param key the cache key of the program
+     */
+    static void save(int program, String key)
+    {
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if(length <= 0)
+            return;
+
+        ByteBuffer buffer = BufferUtils.createByteBuffer(HEADER_SIZE + length);
+        IntBuffer written = BufferUtils.createIntBuffer(1);
+        IntBuffer format = BufferUtils.createIntBuffer(1);
+        buffer.position(HEADER_SIZE);
+        glGetProgramBinary(program, written, format, buffer);
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, format.get(0));
+        buffer.putInt(8, written.get(0));
+
+        byte[] bytes = new byte[HEADER_SIZE + written.get(0)];
+        buffer.position(0);
+        buffer.get(bytes);
+
+        Path file = getFile(key);
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Files.write(file, bytes);
+        }
+        catch(IOException e)
+        {
+            logger.warning("Failed to write program binary " + file);
+        }
+    }
+
+    private static Path getFile(String key)
+    {
+        return Paths.get(Display.getShaderCacheDirectory(), key + ".bin");
+    }
+}
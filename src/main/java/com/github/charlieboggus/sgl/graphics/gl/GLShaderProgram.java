@@ -8,17 +8,85 @@ import org.lwjgl.system.MemoryStack;
 
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
+import static org.lwjgl.opengl.GL11.GL_TRUE;
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
 
 public class GLShaderProgram
 {
     private static final Logger logger = Logger.getLogger(GLShaderProgram.class);
 
+    // Uniform upload counters of the current & last frame (for profiling)
+    private static int uploads = 0;
+    private static int elided = 0;
+    private static int lastFrameUploads = 0;
+    private static int lastFrameElided = 0;
+
+    /**
+     * Method to end the current frame's uniform upload counters. Called by the Display once per frame.
+     */
+    public static void endFrame()
+    {
+        lastFrameUploads = uploads;
+        lastFrameElided = elided;
+        uploads = 0;
+        elided = 0;
+    }
+
+    /**
+     * Method to get the number of uniform uploads made during the last frame
+     *
+     * @return the number of glUniform calls made during the last frame
+     */
+    public static int getUniformUploads()
+    {
+        return lastFrameUploads;
+    }
+
+    /**
+     * Method to get the number of uniform uploads skipped during the last frame because the value hadn't changed
+     *
+     * @return the number of glUniform calls skipped during the last frame
+     */
+    public static int getElidedUniformUploads()
+    {
+        return lastFrameElided;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     private final int id;
     private int vertexId;
     private int fragmentId;
 
+    // Program binary cache key (null if binaries aren't cached) & whether the program was loaded from the cache
+    private String binaryKey;
+    private boolean isCached;
+
+    // Uniform locations by name, filled in after linking (unknown names are added with location -1 when looked up)
+    private final Map<String, Integer> locations = new HashMap<>();
+
+    // Last uploaded value of each active uniform, stored as raw int bits. Each uniform (array) has a slot with an
+    // offset into values, the number of values it can hold & the number of values last uploaded (-1 if unknown).
+    // Locations are mapped to slots with an open addressed table, locations of array elements other than the first
+    // map to -(slot + 1) so uploading to them invalidates the cached value of the array.
+    private int[] slotLocations = new int[0];
+    private int[] slotSlots = new int[0];
+    private int[] slotOffset = new int[0];
+    private int[] slotCapacity = new int[0];
+    private int[] slotCount = new int[0];
+    private int[] values = new int[0];
+
+    // Scratch storage for converting values to raw int bits before comparing them
+    private final int[] bits = new int[16];
+    private final float[] floats = new float[16];
+    private int[] arrayBits = new int[16];
+
     public GLShaderProgram()
     {
         this.id = glCreateProgram();
@@ -43,16 +111,17 @@ public class GLShaderProgram
         }
 
         glDeleteProgram(this.id);
+        GLState.programDeleted(this.id);
     }
 
     public void bind()
     {
-        glUseProgram(this.id);
+        GLState.useProgram(this.id);
     }
 
     public void unbind()
     {
-        glUseProgram(0);
+        GLState.useProgram(0);
     }
 
     public void loadShaders(String vertexFile, String fragmentFile)
@@ -71,6 +140,12 @@ public class GLShaderProgram
 
     public void attachShaders(String vertexSrc, String fragmentSrc)
     {
+        // Skip compiling the shaders if the driver accepts a cached binary of the program
+        this.binaryKey = GLProgramCache.isSupported() ? GLProgramCache.getKey(vertexSrc, fragmentSrc) : null;
+        this.isCached = this.binaryKey != null && GLProgramCache.load(this.id, this.binaryKey);
+        if(this.isCached)
+            return;
+
         this.vertexId = this.compileShader(GL_VERTEX_SHADER, vertexSrc);
         if(this.vertexId == -1)
         {
@@ -90,22 +165,37 @@ public class GLShaderProgram
 
     public void link()
     {
+        // A program loaded from the binary cache is already linked
+        if(this.isCached)
+        {
+            this.introspectUniforms();
+            return;
+        }
+
+        if(this.binaryKey != null)
+            glProgramParameteri(this.id, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+
         glLinkProgram(this.id);
         if(glGetProgrami(this.id, GL_LINK_STATUS) == 0)
         {
             logger.error("Failed to link shader program!");
-            logger.error("Shader Info Log: " + glGetShaderInfoLog(this.id));
+            logger.error("Program Info Log: " + glGetProgramInfoLog(this.id));
+        }
+        else
+        {
+            this.introspectUniforms();
+            if(this.binaryKey != null)
+                GLProgramCache.save(this.id, this.binaryKey);
         }
     }
 
     public void validate()
     {
-        glValidateProgram(this.id);
         glValidateProgram(this.id);
         if(glGetProgrami(this.id, GL_VALIDATE_STATUS) == 0)
         {
             logger.warning("Failed to validate Shader Program!");
-            logger.warning("Shader Info Log: " + glGetShaderInfoLog(this.id));
+            logger.warning("Program Info Log: " + glGetProgramInfoLog(this.id));
         }
     }
 
@@ -137,11 +227,243 @@ public class GLShaderProgram
         return shader;
     }
 
+    /**
+     * Method for building the uniform location table & value cache from the active uniforms of the linked program
+     */
+    private void introspectUniforms()
+    {
+        this.locations.clear();
+
+        int count = glGetProgrami(this.id, GL_ACTIVE_UNIFORMS);
+        String[] names = new String[count];
+        int[] locs = new int[count];
+        int[] sizes = new int[count];
+        int[] components = new int[count];
+        int total = 0;
+        try(MemoryStack stack = MemoryStack.stackPush())
+        {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+            for(int i = 0; i < count; i++)
+            {
+                String name = glGetActiveUniform(this.id, i, size, type);
+
+                // Arrays are reported as "name[0]", register them under both names
+                if(name.endsWith("[0]"))
+                    name = name.substring(0, name.length() - 3);
+                names[i] = name;
+                locs[i] = glGetUniformLocation(this.id, name);
+                this.locations.put(name, locs[i]);
+                sizes[i] = size.get(0);
+                components[i] = componentsOf(type.get(0));
+                if(locs[i] >= 0)
+                    total += sizes[i] * components[i];
+            }
+        }
+
+        // Build the slot table (a power of 2, at least twice the number of locations)
+        int locationCount = 0;
+        for(int i = 0; i < count; i++)
+            locationCount += locs[i] >= 0 ? sizes[i] : 0;
+        int capacity = Integer.highestOneBit(java.lang.Math.max(1, locationCount)) * 4;
+        this.slotLocations = new int[capacity];
+        this.slotSlots = new int[capacity];
+        Arrays.fill(this.slotLocations, -1);
+        this.slotOffset = new int[count];
+        this.slotCapacity = new int[count];
+        this.slotCount = new int[count];
+        this.values = new int[total];
+
+        int offset = 0;
+        for(int i = 0; i < count; i++)
+        {
+            this.slotCount[i] = -1;
+            if(locs[i] < 0)
+                continue;
+
+            this.slotOffset[i] = offset;
+            this.slotCapacity[i] = sizes[i] * components[i];
+            offset += this.slotCapacity[i];
+            this.putSlot(locs[i], i);
+
+            // Element locations aren't necessarily consecutive, so look each one up
+            String name = names[i];
+            for(int j = 1; j < sizes[i]; j++)
+            {
+                int loc = glGetUniformLocation(this.id, name + "[" + j + "]");
+                this.locations.put(name + "[" + j + "]", loc);
+                if(loc >= 0)
+                    this.putSlot(loc, -(i + 1));
+            }
+            if(sizes[i] > 1)
+                this.locations.put(name + "[0]", locs[i]);
+        }
+    }
+
+    private void putSlot(int location, int slot)
+    {
+        int mask = this.slotLocations.length - 1;
+        int i = (location * 0x9E3779B9) >>> 16 & mask;
+        while(this.slotLocations[i] != -1)
+            i = (i + 1) & mask;
+        this.slotLocations[i] = location;
+        this.slotSlots[i] = slot;
+    }
+
+    /**
+     * Method for finding the cache slot of a uniform location
+     *
+     * @return the slot, -(slot + 1) for array elements other than the first, or Integer.MIN_VALUE if not cached
+     */
+    private int findSlot(int location)
+    {
+        if(this.slotLocations.length == 0)
+            return Integer.MIN_VALUE;
+
+        int mask = this.slotLocations.length - 1;
+        int i = (location * 0x9E3779B9) >>> 16 & mask;
+        while(this.slotLocations[i] != -1)
+        {
+            if(this.slotLocations[i] == location)
+                return this.slotSlots[i];
+            i = (i + 1) & mask;
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Method for checking a uniform value against the value last uploaded to its location. If the value differs it is
+     * stored as the last uploaded value and the caller must upload it.
+     *
+     * @param location the location of the uniform
+     * @param data the value as raw int bits
+     * @param count the number of ints in data
+     * @return true if the upload can be skipped, false if the value has to be uploaded
+     */
+    private boolean isUnchanged(int location, int[] data, int count)
+    {
+        // GL ignores uploads to location -1, so don't even make the call
+        if(location < 0)
+            return true;
+
+        int slot = this.findSlot(location);
+        if(slot < 0 || count > this.slotCapacity[slot])
+        {
+            this.invalidate(location);
+            uploads++;
+            return false;
+        }
+
+        int offset = this.slotOffset[slot];
+        if(this.slotCount[slot] == count)
+        {
+            boolean equal = true;
+            for(int i = 0; i < count && equal; i++)
+                equal = this.values[offset + i] == data[i];
+            if(equal)
+            {
+                elided++;
+                return true;
+            }
+        }
+
+        System.arraycopy(data, 0, this.values, offset, count);
+        this.slotCount[slot] = count;
+        uploads++;
+        return false;
+    }
+
+    /**
+     * Method for forgetting the last uploaded value of a uniform (used for uploads that aren't cached)
+     */
+    private void invalidate(int location)
+    {
+        int slot = this.findSlot(location);
+        if(slot == Integer.MIN_VALUE)
+            return;
+        this.slotCount[slot < 0 ? -(slot + 1) : slot] = -1;
+    }
+
+    private boolean isUnchanged(int location, float[] data, int count)
+    {
+        int[] b = count <= this.bits.length ? this.bits : this.getArrayBits(count);
+        for(int i = 0; i < count; i++)
+            b[i] = Float.floatToRawIntBits(data[i]);
+        return this.isUnchanged(location, b, count);
+    }
+
+    private int[] getArrayBits(int count)
+    {
+        if(this.arrayBits.length < count)
+            this.arrayBits = new int[count];
+        return this.arrayBits;
+    }
+
+    private boolean isUnchanged(int location, int a)
+    {
+        this.bits[0] = a;
+        return this.isUnchanged(location, this.bits, 1);
+    }
+
+    private boolean isUnchanged(int location, int a, int b, int c, int d, int count)
+    {
+        this.bits[0] = a;
+        this.bits[1] = b;
+        this.bits[2] = c;
+        this.bits[3] = d;
+        return this.isUnchanged(location, this.bits, count);
+    }
+
+    private boolean isUnchanged(int location, float a, float b, float c, float d, int count)
+    {
+        return this.isUnchanged(location, Float.floatToRawIntBits(a), Float.floatToRawIntBits(b), Float.floatToRawIntBits(c), Float.floatToRawIntBits(d), count);
+    }
+
+    private static int componentsOf(int type)
+    {
+        switch(type)
+        {
+            case GL_FLOAT_VEC2:
+            case GL_INT_VEC2:
+            case GL_BOOL_VEC2:
+                return 2;
+            case GL_FLOAT_VEC3:
+            case GL_INT_VEC3:
+            case GL_BOOL_VEC3:
+                return 3;
+            case GL_FLOAT_VEC4:
+            case GL_INT_VEC4:
+            case GL_BOOL_VEC4:
+            case GL_FLOAT_MAT2:
+                return 4;
+            case GL_FLOAT_MAT3:
+                return 9;
+            case GL_FLOAT_MAT4:
+                return 16;
+            default:
+                // Scalars & samplers (other matrix types are never cached fully, see isUnchanged)
+                return 1;
+        }
+    }
+
     // Uniform Methods -------------------------------------------------------------------------------------------------
 
+    /**
+     * Method to get the location of a uniform. Locations of active uniforms are looked up once when the program is
+     * linked, any other name is looked up the first time it is used.
+     *
+     * @param name the name of the uniform
+     * @return the location of the uniform, or -1 if it isn't an active uniform
+     */
     public int getUniformLocation(String name)
     {
-        return glGetUniformLocation(this.id, name);
+        Integer location = this.locations.get(name);
+        if(location == null)
+        {
+            location = glGetUniformLocation(this.id, name);
+            this.locations.put(name, location);
+        }
+        return location;
     }
 
     public void setUniformBoolean(String name, boolean b)
@@ -151,7 +473,7 @@ public class GLShaderProgram
 
     public void setUniformBoolean(int location, boolean b)
     {
-        glUniform1i(location, b ? 1 : 0);
+        this.setUniform1i(location, b ? 1 : 0);
     }
 
     public void setUniform1i(String name, int v)
@@ -161,7 +483,8 @@ public class GLShaderProgram
 
     public void setUniform1i(int location, int v)
     {
-        glUniform1i(location, v);
+        if(!this.isUnchanged(location, v))
+            glUniform1i(location, v);
     }
 
     public void setUniform1iv(String name, int[] v)
@@ -176,11 +499,14 @@ public class GLShaderProgram
 
     public void setUniform1iv(int location, int[] v)
     {
-        glUniform1iv(location, v);
+        if(!this.isUnchanged(location, v, v.length))
+            glUniform1iv(location, v);
     }
 
     public void setUniform1iv(int location, IntBuffer v)
     {
+        this.invalidate(location);
+        uploads++;
         glUniform1iv(location, v);
     }
 
@@ -203,11 +529,15 @@ public class GLShaderProgram
                 glArr[i * v[i].length + j] = v[i][j];
         }
 
-        glUniform2iv(location, glArr);
+        if(!this.isUnchanged(location, glArr, glArr.length))
+            glUniform2iv(location, glArr);
     }
 
     public void setUniform2iv(int location, Vector2i v)
     {
+        if(this.isUnchanged(location, v.x, v.y, 0, 0, 2))
+            return;
+
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             IntBuffer b = stack.mallocInt(2);
@@ -224,6 +554,9 @@ public class GLShaderProgram
 
     public void setUniform3iv(int location, Vector3i v)
     {
+        if(this.isUnchanged(location, v.x, v.y, v.z, 0, 3))
+            return;
+
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             IntBuffer b = stack.mallocInt(3);
@@ -240,6 +573,9 @@ public class GLShaderProgram
 
     public void setUniform4iv(int location, Vector4i v)
     {
+        if(this.isUnchanged(location, v.x, v.y, v.z, v.w, 4))
+            return;
+
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             IntBuffer b = stack.mallocInt(4);
@@ -256,7 +592,8 @@ public class GLShaderProgram
 
     public void setUniform1f(int location, float v)
     {
-        glUniform1f(location, v);
+        if(!this.isUnchanged(location, Float.floatToRawIntBits(v)))
+            glUniform1f(location, v);
     }
 
     public void setUniform1fv(String name, float[] v)
@@ -271,11 +608,14 @@ public class GLShaderProgram
 
     public void setUniform1fv(int location, float[] v)
     {
-        glUniform1fv(location, v);
+        if(!this.isUnchanged(location, v, v.length))
+            glUniform1fv(location, v);
     }
 
     public void setUniform1fv(int location, FloatBuffer v)
     {
+        this.invalidate(location);
+        uploads++;
         glUniform1fv(location, v);
     }
 
@@ -298,11 +638,15 @@ public class GLShaderProgram
                 glArr[i * v[i].length + j] = v[i][j];
         }
 
-        glUniform2fv(location, glArr);
+        if(!this.isUnchanged(location, glArr, glArr.length))
+            glUniform2fv(location, glArr);
     }
 
     public void setUniform2fv(int location, Vector2f v)
     {
+        if(this.isUnchanged(location, v.x, v.y, 0.0f, 0.0f, 2))
+            return;
+
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             FloatBuffer b = stack.mallocFloat(2);
@@ -319,6 +663,9 @@ public class GLShaderProgram
 
     public void setUniform3fv(int location, Vector3f v)
     {
+        if(this.isUnchanged(location, v.x, v.y, v.z, 0.0f, 3))
+            return;
+
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             FloatBuffer b = stack.mallocFloat(3);
@@ -335,6 +682,9 @@ public class GLShaderProgram
 
     public void setUniform4fv(int location, Vector4f v)
     {
+        if(this.isUnchanged(location, v.x, v.y, v.z, v.w, 4))
+            return;
+
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             FloatBuffer b = stack.mallocFloat(4);
@@ -356,21 +706,25 @@ public class GLShaderProgram
 
     public void setUniformMatrix3fv(int location, Matrix3f mat)
     {
-        try(MemoryStack stack = MemoryStack.stackPush())
-        {
-            FloatBuffer b = stack.mallocFloat(9);
-            mat.get(b);
-
-            glUniformMatrix3fv(location, false, b);
-        }
+        this.setUniformMatrix3fv(location, mat, false);
     }
 
     public void setUniformMatrix3fv(int location, Matrix3f mat, boolean transpose)
     {
+        mat.get(this.floats);
+        if(transpose)
+            this.invalidate(location);
+        else if(this.isUnchanged(location, this.floats, 9))
+            return;
+
+        if(transpose)
+            uploads++;
+
+        // Only the first 9 floats of the scratch array hold the matrix, so upload them from the stack
         try(MemoryStack stack = MemoryStack.stackPush())
         {
             FloatBuffer b = stack.mallocFloat(9);
-            mat.get(b);
+            b.put(this.floats, 0, 9).flip();
 
             glUniformMatrix3fv(location, transpose, b);
         }
@@ -388,23 +742,19 @@ public class GLShaderProgram
 
     public void setUniformMatrix4fv(int location, Matrix4f mat)
     {
-        try(MemoryStack stack = MemoryStack.stackPush())
-        {
-            FloatBuffer b = stack.mallocFloat(16);
-            mat.get(b);
-
-            glUniformMatrix4fv(location, false, b);
-        }
+        this.setUniformMatrix4fv(location, mat, false);
     }
 
     public void setUniformMatrix4fv(int location, Matrix4f mat, boolean transpose)
     {
-        try(MemoryStack stack = MemoryStack.stackPush())
-        {
-            FloatBuffer b = stack.mallocFloat(16);
-            mat.get(b);
+        mat.get(this.floats);
+        if(transpose)
+            this.invalidate(location);
+        else if(this.isUnchanged(location, this.floats, 16))
+            return;
 
-            glUniformMatrix4fv(location, transpose, b);
-        }
+        if(transpose)
+            uploads++;
+        glUniformMatrix4fv(location, transpose, this.floats);
     }
 }
@@ -0,0 +1,288 @@
+package com.github.charlieboggus.sgl.graphics.gl;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_PACK_BUFFER;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Tracker for the OpenGL state changed by the GL wrappers. Every bind, enable & blend function change made by the
+ * wrappers goes through here, and calls that wouldn't change the current state are dropped. All state starts out as
+ * unknown, so the first call for each piece of state always reaches OpenGL. Code that changes GL state without going
+ * through the wrappers must call invalidate afterwards. Must only be used from the thread that owns the GL context.
+ */
+public final class GLState
+{
+    // Value of state that hasn't been set through GLState yet
+    private static final int UNKNOWN = -1;
+
+    private static final int MAX_TEXTURE_UNITS = 32;
+
+    // Buffer targets whose bindings are tracked. GL_ELEMENT_ARRAY_BUFFER is part of the vertex array state so it
+    // isn't tracked and always reaches OpenGL.
+    private static final int[] BUFFER_TARGETS = { GL_ARRAY_BUFFER, GL_PIXEL_PACK_BUFFER, GL_PIXEL_UNPACK_BUFFER };
+
+    // Capabilities whose enabled state is tracked
+    private static final int[] CAPABILITIES = { GL_BLEND, GL_MULTISAMPLE, GL_DEPTH_TEST, GL_SCISSOR_TEST, GL_CULL_FACE };
+
+    private static int program = UNKNOWN;
+    private static int vertexArray = UNKNOWN;
+    private static int activeTexture = UNKNOWN;
+    private static final int[] textures = new int[MAX_TEXTURE_UNITS];
+    private static final int[] buffers = new int[BUFFER_TARGETS.length];
+    private static int drawFramebuffer = UNKNOWN;
+    private static int readFramebuffer = UNKNOWN;
+    private static final int[] capabilities = new int[CAPABILITIES.length];
+    private static int blendSrc = UNKNOWN;
+    private static int blendDst = UNKNOWN;
+
+    // Elided call counters of the current & last frame (for profiling)
+    private static int elided = 0;
+    private static int lastFrameElided = 0;
+
+    static
+    {
+        invalidate();
+    }
+
+    private GLState()
+    {
+    }
+
+    /**
+     * Method to forget all tracked state, so the next call for each piece of state reaches OpenGL. Must be called after
+     * changing GL state without going through the wrappers (i.e. when using another rendering library).
+     */
+    public static void invalidate()
+    {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeTexture = UNKNOWN;
+        for(int i = 0; i < MAX_TEXTURE_UNITS; i++)
+            textures[i] = UNKNOWN;
+        for(int i = 0; i < buffers.length; i++)
+            buffers[i] = UNKNOWN;
+        drawFramebuffer = UNKNOWN;
+        readFramebuffer = UNKNOWN;
+        for(int i = 0; i < capabilities.length; i++)
+            capabilities[i] = UNKNOWN;
+        blendSrc = UNKNOWN;
+        blendDst = UNKNOWN;
+    }
+
+    /**
+     * Method to end the current frame's elided call counter. Called by the Display once per frame.
+     */
+    public static void endFrame()
+    {
+        lastFrameElided = elided;
+        elided = 0;
+    }
+
+    /**
+     * Method to get the number of GL calls dropped during the last frame because they wouldn't have changed any state
+     *
+     * @return the number of elided GL calls during the last frame
+     */
+    public static int getElidedCalls()
+    {
+        return lastFrameElided;
+    }
+
+    // Binding Methods -------------------------------------------------------------------------------------------------
+
+    public static void useProgram(int id)
+    {
+        if(program == id)
+        {
+            elided++;
+            return;
+        }
+        glUseProgram(id);
+        program = id;
+    }
+
+    public static void bindVertexArray(int id)
+    {
+        if(vertexArray == id)
+        {
+            elided++;
+            return;
+        }
+        glBindVertexArray(id);
+        vertexArray = id;
+    }
+
+    public static void bindBuffer(int target, int id)
+    {
+        int i = indexOf(BUFFER_TARGETS, target);
+        if(i == -1)
+        {
+            glBindBuffer(target, id);
+            return;
+        }
+        if(buffers[i] == id)
+        {
+            elided++;
+            return;
+        }
+        glBindBuffer(target, id);
+        buffers[i] = id;
+    }
+
+    public static void activeTexture(int unit)
+    {
+        if(activeTexture == unit)
+        {
+            elided++;
+            return;
+        }
+        glActiveTexture(GL_TEXTURE0 + unit);
+        activeTexture = unit;
+    }
+
+    /**
+     * Method to bind a 2D texture to the given texture unit. The unit is always left as the active texture unit, so
+     * texture parameters can be set right after binding.
+     *
+     * @param unit the texture unit
+     * @param id the texture to bind (0 to unbind)
+     */
+    public static void bindTexture(int unit, int id)
+    {
+        activeTexture(unit);
+        if(unit < MAX_TEXTURE_UNITS && textures[unit] == id)
+        {
+            elided++;
+            return;
+        }
+        glBindTexture(GL_TEXTURE_2D, id);
+        if(unit < MAX_TEXTURE_UNITS)
+            textures[unit] = id;
+    }
+
+    /**
+     * Method to bind a 2D texture to the active texture unit
+     *
+     * @param id the texture to bind (0 to unbind)
+     */
+    public static void bindTexture(int id)
+    {
+        if(activeTexture == UNKNOWN)
+            activeTexture(0);
+        bindTexture(activeTexture, id);
+    }
+
+    public static void bindFramebuffer(int target, int id)
+    {
+        boolean draw = target == GL_FRAMEBUFFER || target == GL_DRAW_FRAMEBUFFER;
+        boolean read = target == GL_FRAMEBUFFER || target == GL_READ_FRAMEBUFFER;
+        if((!draw || drawFramebuffer == id) && (!read || readFramebuffer == id))
+        {
+            elided++;
+            return;
+        }
+        glBindFramebuffer(target, id);
+        if(draw)
+            drawFramebuffer = id;
+        if(read)
+            readFramebuffer = id;
+    }
+
+    // Capability Methods ----------------------------------------------------------------------------------------------
+
+    public static void enable(int cap)
+    {
+        setEnabled(cap, true);
+    }
+
+    public static void disable(int cap)
+    {
+        setEnabled(cap, false);
+    }
+
+    public static void setEnabled(int cap, boolean enabled)
+    {
+        int i = indexOf(CAPABILITIES, cap);
+        int state = enabled ? 1 : 0;
+        if(i != -1 && capabilities[i] == state)
+        {
+            elided++;
+            return;
+        }
+        if(enabled)
+            glEnable(cap);
+        else
+            glDisable(cap);
+        if(i != -1)
+            capabilities[i] = state;
+    }
+
+    public static void blendFunc(int src, int dst)
+    {
+        if(blendSrc == src && blendDst == dst)
+        {
+            elided++;
+            return;
+        }
+        glBlendFunc(src, dst);
+        blendSrc = src;
+        blendDst = dst;
+    }
+
+    // Deletion Methods ------------------------------------------------------------------------------------------------
+    // Deleting a bound object reverts its binding to 0, so the tracked state has to follow
+
+    static void programDeleted(int id)
+    {
+        if(program == id)
+            program = UNKNOWN;
+    }
+
+    static void vertexArrayDeleted(int id)
+    {
+        if(vertexArray == id)
+            vertexArray = 0;
+    }
+
+    static void bufferDeleted(int id)
+    {
+        for(int i = 0; i < buffers.length; i++)
+        {
+            if(buffers[i] == id)
+                buffers[i] = 0;
+        }
+    }
+
+    static void textureDeleted(int id)
+    {
+        for(int i = 0; i < MAX_TEXTURE_UNITS; i++)
+        {
+            if(textures[i] == id)
+                textures[i] = 0;
+        }
+    }
+
+    static void framebufferDeleted(int id)
+    {
+        if(drawFramebuffer == id)
+            drawFramebuffer = 0;
+        if(readFramebuffer == id)
+            readFramebuffer = 0;
+    }
+
+    private static int indexOf(int[] array, int value)
+    {
+        for(int i = 0; i < array.length; i++)
+        {
+            if(array[i] == value)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.charlieboggus.sgl.graphics.gl;
 
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.ByteBuffer;
@@ -7,13 +9,61 @@ import java.nio.FloatBuffer;
 
 import static org.lwjgl.opengl.EXTTextureFilterAnisotropic.GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT;
 import static org.lwjgl.opengl.EXTTextureFilterAnisotropic.GL_TEXTURE_MAX_ANISOTROPY_EXT;
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.*;
+import static org.lwjgl.opengl.EXTTextureSRGB.*;
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
-import static org.lwjgl.opengl.GL13.glActiveTexture;
-import static org.lwjgl.opengl.GL30.glGenerateMipmap;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+import static org.lwjgl.opengl.GL13.glCompressedTexImage2D;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL42.GL_COMPRESSED_RGBA_BPTC_UNORM;
+import static org.lwjgl.opengl.GL42.GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM;
+import static org.lwjgl.opengl.GL43.*;
 
 public class GLTexture
 {
+    /**
+     * Method to check if the driver can sample a compressed texture format
+     *
+     * @param internalFmt the compressed internal format (S3TC/BC1-3, RGTC/BC4-5, BPTC/BC7 or ETC2)
+     * @return true if the format is supported, false otherwise
+     */
+    public static boolean isCompressedFormatSupported(int internalFmt)
+    {
+        GLCapabilities caps = GL.getCapabilities();
+        switch(internalFmt)
+        {
+            case GL_COMPRESSED_RGB_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_RGBA_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_RGBA_S3TC_DXT3_EXT:
+            case GL_COMPRESSED_RGBA_S3TC_DXT5_EXT:
+                return caps.GL_EXT_texture_compression_s3tc;
+            case GL_COMPRESSED_SRGB_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT:
+            case GL_COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT:
+                return caps.GL_EXT_texture_compression_s3tc && caps.GL_EXT_texture_sRGB;
+            case GL_COMPRESSED_RED_RGTC1:
+            case GL_COMPRESSED_SIGNED_RED_RGTC1:
+            case GL_COMPRESSED_RG_RGTC2:
+            case GL_COMPRESSED_SIGNED_RG_RGTC2:
+                return caps.OpenGL30 || caps.GL_ARB_texture_compression_rgtc;
+            case GL_COMPRESSED_RGBA_BPTC_UNORM:
+            case GL_COMPRESSED_SRGB_ALPHA_BPTC_UNORM:
+                return caps.OpenGL42 || caps.GL_ARB_texture_compression_bptc;
+            case GL_COMPRESSED_RGB8_ETC2:
+            case GL_COMPRESSED_SRGB8_ETC2:
+            case GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2:
+            case GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2:
+            case GL_COMPRESSED_RGBA8_ETC2_EAC:
+            case GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC:
+                return caps.OpenGL43 || caps.GL_ARB_ES3_compatibility;
+            default:
+                return false;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     private int id;
 
     public GLTexture()
@@ -21,11 +71,21 @@ public class GLTexture
         this.id = glGenTextures();
     }
 
+    /**
+     * Method to create a new texture name for a destroyed GLTexture, so the same object can be filled again
+     */
+    public void create()
+    {
+        if(this.id == -1)
+            this.id = glGenTextures();
+    }
+
     public void destroy()
     {
         if(this.id != -1)
         {
             glDeleteTextures(this.id);
+            GLState.textureDeleted(this.id);
             this.id = -1;
         }
     }
@@ -42,13 +102,17 @@ public class GLTexture
 
     public void bind(int unit)
     {
-        glActiveTexture(GL_TEXTURE0 + unit);
-        glBindTexture(GL_TEXTURE_2D, this.id);
+        GLState.bindTexture(unit, this.id);
     }
 
     public void unbind()
     {
-        glBindTexture(GL_TEXTURE_2D, 0);
+        GLState.bindTexture(0);
+    }
+
+    public void unbind(int unit)
+    {
+        GLState.bindTexture(unit, 0);
     }
 
     public void uploadTextureData(int internalFmt, int width, int height, int fmt, int type, ByteBuffer data)
@@ -58,6 +122,52 @@ public class GLTexture
         glTexImage2D(GL_TEXTURE_2D, 0, internalFmt, width, height, 0, fmt, type, data);
     }
 
+    /**
+     * Method to upload one mip level of compressed texture data (check isCompressedFormatSupported first)
+     *
+     * @param level the mip level
+     * @param internalFmt the compressed internal format
+     * @param width the width of the mip level
+     * @param height the height of the mip level
+     * @param data the compressed data of the mip level
+     */
+    public void uploadCompressedTextureData(int level, int internalFmt, int width, int height, ByteBuffer data)
+    {
+        glCompressedTexImage2D(GL_TEXTURE_2D, level, internalFmt, width, height, 0, data);
+    }
+
+    /**
+     * Method to upload one mip level of uncompressed texture data
+     *
+     * @param level the mip level
+     * @param internalFmt the internal format
+     * @param width the width of the mip level
+     * @param height the height of the mip level
+     * @param fmt the format of the data
+     * @param type the type of the data
+     * @param alignment the row alignment of the data in bytes (1, 2, 4 or 8)
+     * @param data the data of the mip level
+     */
+    public void uploadTextureData(int level, int internalFmt, int width, int height, int fmt, int type, int alignment, ByteBuffer data)
+    {
+        glPixelStorei(GL_UNPACK_ALIGNMENT, alignment);
+        glTexImage2D(GL_TEXTURE_2D, level, internalFmt, width, height, 0, fmt, type, data);
+
+        // The rest of the library uploads tightly packed rows
+        if(alignment != 1)
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+    }
+
+    /**
+     * Method to set the highest mip level of the texture, so a texture with a partial mip chain is still complete
+     *
+     * @param level the index of the smallest mip level
+     */
+    public void setMaxLevel(int level)
+    {
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, level);
+    }
+
     public void generateMipmap()
     {
         glGenerateMipmap(GL_TEXTURE_2D);
@@ -3,9 +3,9 @@ package com.github.charlieboggus.sgl.graphics.gl;
 import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
-import static org.lwjgl.opengl.GL30.glBindVertexArray;
 import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
 import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
 
 public class GLVertexArray
 {
@@ -19,6 +19,7 @@ public class GLVertexArray
     public void destroy()
     {
         glDeleteVertexArrays(this.id);
+        GLState.vertexArrayDeleted(this.id);
     }
 
     public int getID()
@@ -28,12 +29,12 @@ public class GLVertexArray
 
     public void bind()
     {
-        glBindVertexArray(this.id);
+        GLState.bindVertexArray(this.id);
     }
 
     public void unbind()
     {
-        glBindVertexArray(0);
+        GLState.bindVertexArray(0);
     }
 
     public void enableVertexAttribute(int location)
@@ -48,6 +49,16 @@ public class GLVertexArray
 
     public void setVertexAttributePointer(int location, int size, int type, int stride, int offset)
     {
-        glVertexAttribPointer(location, size, type, false, stride, offset);
+        this.setVertexAttributePointer(location, size, type, false, stride, offset);
+    }
+
+    public void setVertexAttributePointer(int location, int size, int type, boolean normalized, int stride, int offset)
+    {
+        glVertexAttribPointer(location, size, type, normalized, stride, offset);
+    }
+
+    public void setVertexAttributeDivisor(int location, int divisor)
+    {
+        glVertexAttribDivisor(location, divisor);
     }
 }
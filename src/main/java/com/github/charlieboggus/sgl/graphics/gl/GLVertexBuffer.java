@@ -1,15 +1,65 @@
 package com.github.charlieboggus.sgl.graphics.gl;
 
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
+import static org.lwjgl.opengl.ARBBufferStorage.*;
 import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
 
 public class GLVertexBuffer
 {
+    private static final Logger logger = Logger.getLogger(GLVertexBuffer.class);
+
+    // Number of sections a streaming buffer is split into. Each section is fenced when the buffer moves on to the next
+    // one, so the GPU can still be reading from up to STREAM_SECTIONS - 1 sections while the next one is written.
+    private static final int STREAM_SECTIONS = 3;
+
+    /**
+     * Method to create a static element buffer for drawing quads with glDrawElements. Each quad is made up of 4
+     * vertices (bottom left, bottom right, top right, top left) and is drawn as the two triangles 0-1-2 and 2-3-0.
+     * Note: the element buffer binding is part of the vertex array state, so this should be called while the vertex
+     * array that will use it is bound, and the returned buffer should not be unbound until that vertex array is.
+     *
+     * @param quads the maximum number of quads the index buffer needs to be able to draw
+     * @return the bound GL_ELEMENT_ARRAY_BUFFER containing the quad indices (as unsigned ints)
+     */
+    public static GLVertexBuffer createQuadIndexBuffer(int quads)
+    {
+        IntBuffer indices = BufferUtils.createIntBuffer(quads * 6);
+        for(int i = 0, v = 0; i < quads; i++, v += 4)
+            indices.put(v).put(v + 1).put(v + 2).put(v + 2).put(v + 3).put(v);
+        indices.flip();
+
+        GLVertexBuffer ibo = new GLVertexBuffer(GL_ELEMENT_ARRAY_BUFFER);
+        ibo.bind();
+        ibo.uploadBufferData(indices, GL_STATIC_DRAW);
+
+        return ibo;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     private final int id;
     private final int target;
 
+    // Streaming state (only used after createStreamingStorage has been called)
+    private boolean streaming;
+    private boolean immutable;
+    private ByteBuffer mapped;
+    private int sectionSize;
+    private int section;
+    private int streamOffset;
+    private long[] fences;
+
     public GLVertexBuffer()
     {
         this(GL_ARRAY_BUFFER);
@@ -23,7 +73,26 @@ public class GLVertexBuffer
 
     public void destroy()
     {
+        if(this.streaming)
+        {
+            for(int i = 0; i < STREAM_SECTIONS; i++)
+            {
+                if(this.fences[i] != 0)
+                    glDeleteSync(this.fences[i]);
+                this.fences[i] = 0;
+            }
+
+            if(this.mapped != null)
+            {
+                this.bind();
+                glUnmapBuffer(this.target);
+                this.unbind();
+                this.mapped = null;
+            }
+        }
+
         glDeleteBuffers(this.id);
+        GLState.bufferDeleted(this.id);
     }
 
     public int getID()
@@ -33,12 +102,12 @@ public class GLVertexBuffer
 
     public void bind()
     {
-        glBindBuffer(this.target, this.id);
+        GLState.bindBuffer(this.target, this.id);
     }
 
     public void unbind()
     {
-        glBindBuffer(this.target, 0);
+        GLState.bindBuffer(this.target, 0);
     }
 
     public void uploadBufferData(int size, int usage)
@@ -46,6 +115,11 @@ public class GLVertexBuffer
         glBufferData(this.target, size, usage);
     }
 
+    public void uploadBufferData(ByteBuffer data, int usage)
+    {
+        glBufferData(this.target, data, usage);
+    }
+
     public void uploadBufferData(FloatBuffer data, int usage)
     {
         glBufferData(this.target, data, usage);
@@ -66,6 +140,11 @@ public class GLVertexBuffer
         glBufferData(this.target, data, usage);
     }
 
+    public void uploadBufferSubData(ByteBuffer data, int offset)
+    {
+        glBufferSubData(this.target, offset, data);
+    }
+
     public void uploadBufferSubData(FloatBuffer data, int offset)
     {
         glBufferSubData(this.target, offset, data);
@@ -85,4 +164,129 @@ public class GLVertexBuffer
     {
         glBufferSubData(this.target, offset, data);
     }
+
+    // Streaming Methods -----------------------------------------------------------------------------------------------
+
+    /**
+     * Method to allocate this buffer as a streaming ring buffer. Data written with streamBufferData is appended to the
+     * buffer rather than overwriting the data at the start of it, so the driver never has to wait for the GPU to
+     * finish reading the previous data before it can be replaced. If ARB_buffer_storage is supported the buffer is
+     * persistently mapped and each section is guarded by a fence, otherwise data is written through unsynchronized
+     * glMapBufferRange calls and the buffer is orphaned every time the ring wraps around. The buffer must be bound.
+     *
+     * @param sectionSize the size (in bytes) of each section of the ring buffer. This must be at least as large as the
+     *                    largest amount of data that will be streamed at once.
+     */
+    public void createStreamingStorage(int sectionSize)
+    {
+        int size = sectionSize * STREAM_SECTIONS;
+
+        this.streaming = true;
+        this.immutable = GL.getCapabilities().GL_ARB_buffer_storage;
+        this.sectionSize = sectionSize;
+        this.section = 0;
+        this.streamOffset = 0;
+        this.fences = new long[STREAM_SECTIONS];
+
+        if(this.immutable)
+        {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(this.target, size, flags);
+            this.mapped = glMapBufferRange(this.target, 0, size, flags);
+
+            // Immutable storage can't be orphaned, so if the persistent mapping failed the sections are still fenced
+            // and written through glMapBufferRange instead
+            if(this.mapped == null)
+                logger.warning("Failed to persistently map streaming buffer!");
+        }
+        else
+            glBufferData(this.target, size, GL_STREAM_DRAW);
+    }
+
+    /**
+     * Method to append data to a streaming buffer created by createStreamingStorage. The buffer must be bound.
+     *
+     * @param data the data to write to the buffer (from its position to its limit)
+     * @param alignment the alignment (in bytes) of the returned offset, e.g. the vertex size so the offset can be
+     *                  used as a base vertex
+     * @return the offset (in bytes) in the buffer that the data was written to, or -1 if it doesn't fit
+     */
+    public int streamBufferData(ByteBuffer data, int alignment)
+    {
+        int size = data.remaining();
+        if(size + alignment > this.sectionSize)
+        {
+            logger.error("Streamed data is larger than the streaming buffer section size!");
+            return -1;
+        }
+
+        int offset = align(this.streamOffset, alignment);
+        if(offset + size > (this.section + 1) * this.sectionSize)
+        {
+            // Fence the section we're leaving so we know when the GPU is done reading from it
+            if(this.immutable)
+                this.fences[this.section] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+
+            this.section = (this.section + 1) % STREAM_SECTIONS;
+            offset = align(this.section * this.sectionSize, alignment);
+
+            if(this.immutable)
+                this.waitForSection(this.section);
+            else if(this.section == 0)
+                this.orphan();
+        }
+
+        if(this.mapped != null)
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), MemoryUtil.memAddress(this.mapped) + offset, size);
+        else
+        {
+            ByteBuffer range = glMapBufferRange(this.target, offset, size, GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT);
+            if(range == null)
+            {
+                logger.error("Failed to map streaming buffer range!");
+                return -1;
+            }
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), MemoryUtil.memAddress(range), size);
+            glUnmapBuffer(this.target);
+        }
+
+        this.streamOffset = offset + size;
+        return offset;
+    }
+
+    public boolean isStreaming()
+    {
+        return this.streaming;
+    }
+
+    public boolean isPersistentlyMapped()
+    {
+        return this.mapped != null;
+    }
+
+    private void waitForSection(int section)
+    {
+        long fence = this.fences[section];
+        if(fence == 0)
+            return;
+
+        int result = glClientWaitSync(fence, 0, 0);
+        while(result != GL_ALREADY_SIGNALED && result != GL_CONDITION_SATISFIED && result != GL_WAIT_FAILED)
+            result = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, 1000000L);
+
+        glDeleteSync(fence);
+        this.fences[section] = 0;
+    }
+
+    private void orphan()
+    {
+        // Give the buffer fresh storage so the unsynchronized writes can't overwrite data the GPU is still reading
+        glBufferData(this.target, this.sectionSize * STREAM_SECTIONS, GL_STREAM_DRAW);
+    }
+
+    private static int align(int offset, int alignment)
+    {
+        int rem = offset % alignment;
+        return (rem == 0) ? offset : offset + alignment - rem;
+    }
 }
@@ -3,6 +3,8 @@ package com.github.charlieboggus.sgl.utility;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 
+import java.nio.ByteOrder;
+
 public class Color
 {
     public static final Color Clear         = new Color(0.0f, 0.0f, 0.0f, 0.0f);
@@ -300,6 +302,21 @@ public class Color
         return ((int)(this.a() * 255) << 24) | ((int)(this.b() * 255) << 16) | ((int)(this.g() * 255) << 8) | ((int)(this.r() * 255));
     }
 
+    public int toNativeRGBA8888()
+    {
+        return toNativeRGBA8888(this.r(), this.g(), this.b(), this.a());
+    }
+
+    /**
+     * Method to pack color components (in the range [0, 1]) so the bytes are r, g, b, a in memory when written to a
+     * native ordered buffer
+     */
+    public static int toNativeRGBA8888(float r, float g, float b, float a)
+    {
+        int rgba = ((int)(r * 255) << 24) | ((int)(g * 255) << 16) | ((int)(b * 255) << 8) | ((int)(a * 255));
+        return (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) ? Integer.reverseBytes(rgba) : rgba;
+    }
+
     public Vector3f toVector3()
     {
         return new Vector3f(this.r(), this.g(), this.b());
@@ -0,0 +1,31 @@
+#version 330 core
+
+// Per vertex: corner of the unit quad
+layout (location = 0) in vec2 corner;
+
+// Per instance
+layout (location = 1) in vec2 position;
+layout (location = 2) in vec2 size;
+layout (location = 3) in vec2 origin;
+layout (location = 4) in float rotation;
+layout (location = 5) in vec4 region;
+layout (location = 6) in vec4 color;
+
+out vec4 Color;
+out vec2 TexCoords;
+
+uniform mat4 projectionView;
+
+void main()
+{
+    // Scale the unit quad, rotate it around the origin, then translate it into place
+    vec2 local = corner * size - origin;
+    float s = sin(rotation);
+    float c = cos(rotation);
+    vec2 world = position + origin + vec2(c * local.x - s * local.y, s * local.x + c * local.y);
+
+    Color = color;
+    TexCoords = mix(region.xy, region.zw, corner);
+
+    gl_Position = projectionView * vec4(world, 0.0, 1.0);
+}
@@ -2,12 +2,38 @@
 
 in vec4 Color;
 in vec2 TexCoords;
+flat in int TexSlot;
 
 out vec4 FragColor;
 
-uniform sampler2D image0;
+// Must match SpriteBatch.MAX_TEXTURE_SLOTS
+uniform sampler2D images[16];
+
+vec4 sampleImage(int slot, vec2 uv)
+{
+    // Sampler arrays can only be indexed by constant expressions in GLSL 330
+    switch(slot)
+    {
+        case 0:  return texture(images[0], uv);
+        case 1:  return texture(images[1], uv);
+        case 2:  return texture(images[2], uv);
+        case 3:  return texture(images[3], uv);
+        case 4:  return texture(images[4], uv);
+        case 5:  return texture(images[5], uv);
+        case 6:  return texture(images[6], uv);
+        case 7:  return texture(images[7], uv);
+        case 8:  return texture(images[8], uv);
+        case 9:  return texture(images[9], uv);
+        case 10: return texture(images[10], uv);
+        case 11: return texture(images[11], uv);
+        case 12: return texture(images[12], uv);
+        case 13: return texture(images[13], uv);
+        case 14: return texture(images[14], uv);
+        default: return texture(images[15], uv);
+    }
+}
 
 void main()
 {
-    FragColor = texture(image0, TexCoords) * Color;
-}
\ No newline at end of file
+    FragColor = sampleImage(TexSlot, TexCoords) * Color;
+}
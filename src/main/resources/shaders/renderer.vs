@@ -3,14 +3,24 @@
 layout (location = 0) in vec2 position;
 layout (location = 1) in vec4 color;
 layout (location = 2) in vec2 texCoords;
+layout (location = 3) in float texSlot;
 
 out vec4 Color;
 out vec2 TexCoords;
+flat out int TexSlot;
+
+uniform mat4 projection;
+uniform mat4 view;
 
 void main()
 {
+    // The low 4 bits are the texture slot, bit 4 is set if the vertex ignores the camera (see SpriteBatch.NO_CAMERA_FLAG)
+    int flags = int(texSlot);
+
     Color = color;
     TexCoords = texCoords;
+    TexSlot = flags & 15;
 
-    gl_Position = vec4(position, 0.0, 1.0);
-}
\ No newline at end of file
+    vec4 world = vec4(position, 0.0, 1.0);
+    gl_Position = ((flags & 16) != 0) ? projection * world : projection * view * world;
+}
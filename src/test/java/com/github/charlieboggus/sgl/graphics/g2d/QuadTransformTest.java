@@ -0,0 +1,130 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import org.joml.Matrix4f;
+import org.joml.Rectanglef;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests that the scalar quad transform used by SpriteBatch.drawTexture & drawText matches the JOML matrix chain it
+ * replaced & doesn't allocate.
+ */
+public class QuadTransformTest
+{
+    private static final int QUADS = 100000;
+
+    // Allowed difference per corner coordinate, relative to the largest position or size of the quad. Corners near 0
+    // are the result of cancellation, so their error depends on the size of the inputs, not of the result
+    private static final float TOLERANCE = 1e-6f;
+
+    @Test
+    public void matchesMatrixChain()
+    {
+        Random random = new Random(42);
+        float[] out = new float[8];
+        float[] expected = new float[8];
+        for(int i = 0; i < QUADS; i++)
+        {
+            float x = random.nextFloat() * 2000.0f - 1000.0f;
+            float y = random.nextFloat() * 2000.0f - 1000.0f;
+            float w = 1.0f + random.nextFloat() * 512.0f;
+            float h = 1.0f + random.nextFloat() * 512.0f;
+            float rotation = (i % 4 == 0) ? 0.0f : random.nextFloat() * 720.0f - 360.0f;
+            float scale = 0.1f + random.nextFloat() * 4.0f;
+
+            QuadTransform.transform(out, x, y, w, h, rotation, scale);
+            transformWithMatrix(expected, x, y, w, h, rotation, scale);
+
+            float magnitude = Math.max(Math.max(Math.abs(x), Math.abs(y)), Math.max(w, h) * Math.max(1.0f, scale));
+            float delta = TOLERANCE * Math.max(1.0f, magnitude);
+            for(int j = 0; j < 8; j++)
+            {
+                assertEquals(expected[j], out[j], delta, "Quad " + i + ", corner " + (j / 2) + ((j % 2 == 0) ? " x" : " y"));
+            }
+        }
+    }
+
+    @Test
+    public void doesNotAllocate()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocation measurement isn't supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        float[] out = new float[8];
+        Rectanglef bounds = new Rectanglef(0.0f, 0.0f, 1280.0f, 720.0f);
+
+        // Warm up so class loading & JIT compilation don't count towards the measured allocations
+        float sink = transformQuads(out, bounds, QUADS);
+
+        // Measure an empty run first, so the cost of the measurement itself isn't counted. The smallest of a few runs
+        // is used, since a JIT transition can still allocate during a run (a real allocation shows up in every run)
+        long overhead = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for(int run = 0; run < 5; run++)
+        {
+            long start = threads.getThreadAllocatedBytes(thread);
+            sink += transformQuads(out, bounds, 0);
+            overhead = Math.min(overhead, threads.getThreadAllocatedBytes(thread) - start);
+
+            start = threads.getThreadAllocatedBytes(thread);
+            sink += transformQuads(out, bounds, QUADS);
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - start);
+        }
+
+        assertTrue(allocated <= overhead, "Transforming " + QUADS + " quads allocated " + allocated + " bytes");
+        assertFalse(Float.isNaN(sink));
+    }
+
+    /**
+     * Method for doing the per quad transform work of SpriteBatch.drawTexture (culling & transforming the corners)
+     */
+    private static float transformQuads(float[] out, Rectanglef bounds, int count)
+    {
+        float sum = 0.0f;
+        for(int i = 0; i < count; i++)
+        {
+            float x = (i % 1500) - 100.0f;
+            float y = (i % 900) - 100.0f;
+            float rotation = (i % 3 == 0) ? 0.0f : i * 0.5f;
+            if(!QuadTransform.intersects(bounds, x, y, 32.0f, 48.0f, rotation, 1.5f))
+                continue;
+
+            QuadTransform.transform(out, x, y, 32.0f, 48.0f, rotation, 1.5f);
+            sum += out[4];
+        }
+        return sum;
+    }
+
+    /**
+     * Method for transforming the quad corners the way SpriteBatch did before the scalar path (model matrix * unit
+     * quad corners)
+     */
+    private static void transformWithMatrix(float[] out, float x, float y, float w, float h, float rotation, float scale)
+    {
+        Matrix4f model = new Matrix4f();
+        model.translate(new Vector3f(x, y, 0.0f));
+        model.translate(new Vector3f(0.5f * w, 0.5f * h, 0.0f));
+        model.rotateZ((float) Math.toRadians(rotation));
+        model.translate(new Vector3f(-0.5f * w, -0.5f * h, 0.0f));
+        model.scale(new Vector3f(scale * w, scale * h, 1.0f));
+
+        Vector4f v1 = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f).mul(model);    // Bottom Left
+        Vector4f v2 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).mul(model);    // Bottom Right
+        Vector4f v3 = new Vector4f(1.0f, 1.0f, 0.0f, 1.0f).mul(model);    // Top Right
+        Vector4f v4 = new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).mul(model);    // Top Left
+
+        out[0] = v1.x;  out[1] = v1.y;
+        out[2] = v2.x;  out[3] = v2.y;
+        out[4] = v3.x;  out[5] = v3.y;
+        out[6] = v4.x;  out[7] = v4.y;
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.charlieboggus.sgl.graphics.g2d;
+
+import com.github.charlieboggus.sgl.core.*;
+import com.github.charlieboggus.sgl.utility.Color;
+import com.github.charlieboggus.sgl.utility.Logger;
+
+import java.util.Random;
+
+import static org.lwjgl.glfw.GLFW.glfwGetCurrentContext;
+import static org.lwjgl.glfw.GLFW.glfwSetWindowShouldClose;
+import static org.lwjgl.opengl.GL11.glFinish;
+
+/**
+ * Benchmark comparing the default & compact SpriteBatch vertex formats. Draws 50k sprites per frame with each format
+ * and logs the vertex bytes uploaded per frame & the average render time per frame (drawing, uploading & waiting for
+ * the GPU with glFinish, so frame pacing isn't included). Needs a display, so it's run by hand rather than as a test:
+ *
+ *   SpriteBatchBenchmark [sprites] [frames]
+ */
+public class SpriteBatchBenchmark extends Game<Void>
+{
+    private static final Logger logger = Logger.getLogger(SpriteBatchBenchmark.class);
+
+    private static final int WARMUP_FRAMES = 120;
+
+    private final int sprites;
+    private final int frames;
+
+    private SpriteBatch[] batches;
+    private Texture texture;
+    private float[] positions;
+    private Color[] colors;
+
+    // Index of the batch being measured, frames drawn with it & total render time of the measured frames
+    private int current;
+    private int frame;
+    private long time;
+    private final long[] bytes = new long[2];
+    private final double[] times = new double[2];
+
+    public static void main(String[] args)
+    {
+        int sprites = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+
+        Configuration cfg = new Configuration();
+        cfg.setVsyncEnabled(false);
+        cfg.setTargetFPS(100000);
+        new Application(cfg).start(new SpriteBatchBenchmark(sprites, frames));
+    }
+
+    private SpriteBatchBenchmark(int sprites, int frames)
+    {
+        this.sprites = sprites;
+        this.frames = frames;
+    }
+
+    @Override
+    public void initialize()
+    {
+        this.batches = new SpriteBatch[] { new SpriteBatch(false), new SpriteBatch(true) };
+        this.texture = new Texture(16, 16);
+
+        // Every sprite is on screen, so none are culled
+        Random random = new Random(42);
+        this.positions = new float[this.sprites * 2];
+        this.colors = new Color[this.sprites];
+        for(int i = 0; i < this.sprites; i++)
+        {
+            this.positions[i * 2] = random.nextFloat() * (Display.getWidth() - 16);
+            this.positions[i * 2 + 1] = random.nextFloat() * (Display.getHeight() - 16);
+            this.colors[i] = new Color(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1.0f);
+        }
+
+        this.current = 0;
+        this.frame = 0;
+        this.time = 0;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        for(SpriteBatch batch : this.batches)
+            batch.dispose();
+        this.texture.dispose();
+    }
+
+    @Override
+    public void processInput()
+    {
+    }
+
+    @Override
+    public void update(float delta)
+    {
+    }
+
+    @Override
+    public void render()
+    {
+        if(this.current == this.batches.length)
+            return;
+
+        SpriteBatch batch = this.batches[this.current];
+        long start = System.nanoTime();
+        batch.begin();
+        for(int i = 0; i < this.sprites; i++)
+            batch.drawTexture(this.texture, this.positions[i * 2], this.positions[i * 2 + 1], 0.0f, 1.0f, this.colors[i], false);
+        batch.end();
+        glFinish();
+        long elapsed = System.nanoTime() - start;
+
+        this.frame++;
+        if(this.frame <= WARMUP_FRAMES)
+            return;
+
+        this.time += elapsed;
+        if(this.frame == WARMUP_FRAMES + this.frames)
+        {
+            this.bytes[this.current] = batch.getUploadedBytes();
+            this.times[this.current] = this.time / 1e6 / this.frames;
+            this.current++;
+            this.frame = 0;
+            this.time = 0;
+
+            if(this.current == this.batches.length)
+                this.report();
+        }
+    }
+
+    private void report()
+    {
+        // Quads are indexed, so each sprite uploads 4 vertices
+        long expectedDefault = (long) this.sprites * 4 * SpriteBatch.getVertexSize(false);
+        long expectedCompact = (long) this.sprites * 4 * SpriteBatch.getVertexSize(true);
+        if(this.bytes[0] != expectedDefault || this.bytes[1] != expectedCompact)
+            logger.warning("Uploaded bytes differ from the expected " + expectedDefault + " (default) & " + expectedCompact + " (compact), some sprites were culled");
+
+        logger.info(this.sprites + " sprites, average over " + this.frames + " frames:");
+        logger.info(String.format("  default: %,d bytes uploaded per frame, %.3f ms per frame", this.bytes[0], this.times[0]));
+        logger.info(String.format("  compact: %,d bytes uploaded per frame, %.3f ms per frame", this.bytes[1], this.times[1]));
+        logger.info(String.format("  saved:   %,d bytes (%.0f%%), %.3f ms per frame", this.bytes[0] - this.bytes[1],
+                100.0 * (this.bytes[0] - this.bytes[1]) / this.bytes[0], this.times[0] - this.times[1]));
+        glfwSetWindowShouldClose(glfwGetCurrentContext(), true);
+    }
+}